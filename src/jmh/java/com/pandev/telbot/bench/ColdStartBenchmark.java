@@ -0,0 +1,81 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.TreeJournal;
+import com.pandev.telbot.tree.TreeOp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Холодный старт снимка арендатора: восстановление из локального снимка и хвоста журнала
+ * против построения из строк рекурсивного запроса. Второй вариант — нижняя оценка загрузки из базы:
+ * в него не входят выполнение запроса в PostgreSQL и передача строк по сети.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ColdStartBenchmark {
+    private static final long TENANT = 1;
+
+    @Param({"BALANCED"})
+    public String shape;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"0", "10000"})
+    public int tail;
+
+    private List<CategoryTree.Row> rows;
+    private Path dir;
+
+    @Setup
+    public void setUp() throws IOException {
+        rows = SyntheticTrees.rows(shape, size);
+        dir = Files.createTempDirectory("telbot-journal");
+        TreeJournal journal = new TreeJournal(dir.toString(), Integer.MAX_VALUE, 1 << 20);
+        journal.writeSnapshot(TENANT, CategoryTree.build(rows), 0);
+        for (int i = 0; i < tail; i++) {
+            long id = size + i + 1L;
+            journal.append(TENANT, TreeOp.add(id, "Новая " + id, (long) (i % size) + 1), i + 1L);
+        }
+        journal.close();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int buildFromRows() {
+        return CategoryTree.build(rows).size();
+    }
+
+    @Benchmark
+    public int snapshotAndReplay() {
+        TreeJournal journal = new TreeJournal(dir.toString(), Integer.MAX_VALUE, 1 << 20);
+        int loaded = journal.load(TENANT).tree().size();
+        journal.close();
+        return loaded;
+    }
+}
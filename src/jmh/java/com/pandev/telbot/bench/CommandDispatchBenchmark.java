@@ -0,0 +1,75 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.command.CommandLine;
+import com.pandev.telbot.command.CommandManager;
+import com.pandev.telbot.metrics.TelbotMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор текста команды и маршрутизация через CommandManager.
+ * legacySplit повторяет прежний разбор String.split для сравнения с CommandLine.
+ * Маршрутизируются команды, не обращающиеся к базе данных (/help и неизвестная команда).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandDispatchBenchmark {
+    @Param({"/help", "/addElement Электроника Телефоны", "/addElement \"Бытовая техника\" \"Крупная техника\""})
+    public String text;
+
+    private CommandManager commandManager;
+    private Update helpUpdate;
+    private Update unknownUpdate;
+
+    @Setup
+    public void setUp() {
+        commandManager = new CommandManager(null, null, new TelbotMetrics(new SimpleMeterRegistry()));
+        // /help и неизвестные команды не используют сервисы
+        helpUpdate = update("/help");
+        unknownUpdate = update("/unknown " + text);
+    }
+
+    private static Update update(String text) {
+        Chat chat = new Chat(1L, "private");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    @Benchmark
+    public String[] legacySplit() {
+        String[] parts = text.split(" ", 2);
+        return parts.length > 1 ? parts[1].split(" ") : new String[0];
+    }
+
+    @Benchmark
+    public CommandLine tokenize() {
+        return CommandLine.parse(text);
+    }
+
+    @Benchmark
+    public String routeHelp() {
+        return commandManager.route(helpUpdate);
+    }
+
+    @Benchmark
+    public String routeUnknown() {
+        return commandManager.route(unknownUpdate);
+    }
+}
@@ -0,0 +1,67 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.service.CategoryExcelExporter;
+import com.pandev.telbot.service.CategoryExcelImporter;
+import com.pandev.telbot.service.CategoryFileExporter;
+import com.pandev.telbot.service.TreeFormat;
+import com.pandev.telbot.tree.CategoryTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Экспорт дерева в XLSX (путь CategoryRenderCache без кэша)
+ * и потоковый разбор загруженного файла (цикл разбора UploadCommand).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExcelBenchmark {
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private final CategoryExcelExporter exporter = new CategoryExcelExporter();
+    private final CategoryFileExporter fileExporter =
+            new CategoryFileExporter(exporter, System.getProperty("java.io.tmpdir"));
+    private final CategoryExcelImporter importer = new CategoryExcelImporter();
+    private CategoryTree tree;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = SyntheticTrees.tree(shape, size);
+        file = fileExporter.exportToFile(tree, TreeFormat.XLSX);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void export() throws IOException {
+        exporter.write(tree, OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public int parseUpload() throws IOException {
+        int[] rows = {0};
+        importer.parse(file, row -> rows[0]++);
+        return rows[0];
+    }
+}
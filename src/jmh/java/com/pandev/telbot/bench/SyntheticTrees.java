@@ -0,0 +1,46 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.tree.CategoryTree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Синтетические деревья категорий для бенчмарков.
+ *
+ * Формы:
+ *  - WIDE — один корень, все остальные категории — его дети;
+ *  - DEEP — цепочки глубиной {@link #DEEP_CHAIN}, каждая начинается с отдельного корня;
+ *  - BALANCED — каждый узел имеет до {@link #FANOUT} детей, уровни заполняются по очереди.
+ */
+final class SyntheticTrees {
+    static final int DEEP_CHAIN = 64;
+    static final int FANOUT = 10;
+
+    private SyntheticTrees() {
+    }
+
+    /**
+     * @param shape Форма дерева: WIDE, DEEP или BALANCED.
+     * @param size  Количество категорий.
+     * @return Строки дерева; родитель всегда предшествует детям.
+     */
+    static List<CategoryTree.Row> rows(String shape, int size) {
+        List<CategoryTree.Row> rows = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+            Long parentId = switch (shape) {
+                case "WIDE" -> i == 0 ? null : 1L;
+                case "DEEP" -> i % DEEP_CHAIN == 0 ? null : id - 1;
+                case "BALANCED" -> i == 0 ? null : (long) ((i - 1) / FANOUT + 1);
+                default -> throw new IllegalArgumentException("Unknown shape: " + shape);
+            };
+            rows.add(new CategoryTree.Row(id, parentId, "Категория " + id));
+        }
+        return rows;
+    }
+
+    static CategoryTree tree(String shape, int size) {
+        return CategoryTree.build(rows(shape, size));
+    }
+}
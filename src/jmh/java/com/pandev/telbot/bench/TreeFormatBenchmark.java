@@ -0,0 +1,76 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.service.CategoryCsvFormat;
+import com.pandev.telbot.service.CategoryExcelExporter;
+import com.pandev.telbot.service.CategoryExcelImporter;
+import com.pandev.telbot.service.CategoryFileExporter;
+import com.pandev.telbot.service.CategoryJsonFormat;
+import com.pandev.telbot.service.TreeFormat;
+import com.pandev.telbot.tree.CategoryTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение форматов /download и /upload: экспорт во временный файл и потоковый разбор.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TreeFormatBenchmark {
+    @Param({"XLSX", "CSV", "JSON"})
+    public TreeFormat format;
+
+    @Param({"BALANCED"})
+    public String shape;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private final String tempDir = System.getProperty("java.io.tmpdir");
+    private final CategoryFileExporter exporter = new CategoryFileExporter(new CategoryExcelExporter(), tempDir);
+    private final CategoryExcelImporter excelImporter = new CategoryExcelImporter();
+    private CategoryTree tree;
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        tree = SyntheticTrees.tree(shape, size);
+        file = exporter.exportToFile(tree, format);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        Path exported = exporter.exportToFile(tree, format);
+        long bytes = Files.size(exported);
+        Files.delete(exported);
+        return bytes;
+    }
+
+    @Benchmark
+    public int parseUpload() throws IOException {
+        int[] rows = {0};
+        switch (format) {
+            case XLSX -> excelImporter.parse(file, row -> rows[0]++);
+            case CSV -> CategoryCsvFormat.parse(file, row -> rows[0]++);
+            case JSON -> CategoryJsonFormat.parse(file, row -> rows[0]++);
+        }
+        return rows[0];
+    }
+}
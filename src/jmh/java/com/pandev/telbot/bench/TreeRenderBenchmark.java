@@ -0,0 +1,77 @@
+package com.pandev.telbot.bench;
+
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.DepthFirstCursor;
+import com.pandev.telbot.tree.TreePager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отрисовка дерева для /viewTree: полный текст (бывший ViewTreeCommand.formatCategory),
+ * первая страница и страница из середины дерева, а также построение снимка из строк запроса
+ * и его компактного представления. Выделение памяти на операцию показывает профилировщик -prof gc.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TreeRenderBenchmark {
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<CategoryTree.Row> rows;
+    private CategoryTree tree;
+    private long middleId;
+
+    @Setup
+    public void setUp() {
+        rows = SyntheticTrees.rows(shape, size);
+        tree = CategoryTree.build(rows);
+        middleId = size / 2 + 1;
+    }
+
+    @Benchmark
+    public CategoryTree buildSnapshot() {
+        return CategoryTree.build(rows);
+    }
+
+    @Benchmark
+    public long depthFirstWalk() {
+        long sum = 0; // Обход, которым выгрузка в CSV и JSON проходит снимок
+        DepthFirstCursor cursor = tree.depthFirst();
+        while (cursor.advance()) {
+            sum += cursor.node().id() + cursor.depth();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int fullText() {
+        StringBuilder sb = new StringBuilder();
+        for (long rootId : tree.rootIds()) {
+            tree.appendText(rootId, sb);
+        }
+        return sb.length();
+    }
+
+    @Benchmark
+    public TreePager.Page firstPage() {
+        return TreePager.page(tree, null, -1, "Категории:\n", 4000);
+    }
+
+    @Benchmark
+    public TreePager.Page middlePage() {
+        return TreePager.page(tree, null, middleId, "Категории:\n", 4000);
+    }
+}
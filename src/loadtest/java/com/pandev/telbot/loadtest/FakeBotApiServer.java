@@ -0,0 +1,255 @@
+package com.pandev.telbot.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальная заглушка Telegram Bot API для нагрузочного тестирования.
+ *
+ * Обслуживает пути /bot{token}/{method} и /file/bot{token}/{path}:
+ *  - getUpdates — длинный опрос очереди синтетических обновлений (offset, limit, timeout);
+ *  - sendMessage, editMessageText, sendDocument — принимаются и передаются {@link ResponseListener};
+ *  - getFile — возвращает file_path для скачивания;
+ *  - скачивание файла — отдаёт заранее подготовленный XLSX;
+ *  - остальные методы (deleteWebhook, answerCallbackQuery и т.д.) — ответ {"ok":true,"result":true}.
+ * Токен бота не проверяется.
+ */
+public class FakeBotApiServer implements AutoCloseable {
+
+    /**
+     * Получатель ответов бота.
+     */
+    @FunctionalInterface
+    public interface ResponseListener {
+        /**
+         * @param chatId Чат, которому адресован ответ.
+         * @param method Метод Bot API, например sendMessage.
+         */
+        void onResponse(long chatId, String method);
+    }
+
+    private static final String FILE_PATH = "documents/upload.xlsx";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ResponseListener listener;
+    private final byte[] uploadFile;
+    private final Deque<ObjectNode> updates = new ArrayDeque<>(); // Под блокировкой updates
+    private final AtomicLong updateIds = new AtomicLong();
+    private final AtomicLong messageIds = new AtomicLong();
+    private final CountDownLatch firstPoll = new CountDownLatch(1);
+
+    /**
+     * Запускает сервер.
+     *
+     * @param port       Порт (0 — любой свободный).
+     * @param listener   Получатель ответов бота.
+     * @param uploadFile Содержимое файла, который бот скачивает после getFile.
+     * @throws IOException Если порт недоступен.
+     */
+    public FakeBotApiServer(int port, ResponseListener listener, byte[] uploadFile) throws IOException {
+        this.listener = listener;
+        this.uploadFile = uploadFile;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.executor = Executors.newFixedThreadPool(64);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    /**
+     * @return Адрес сервера, который передаётся боту в свойстве telegram.bot.api-url.
+     */
+    public String apiUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Ждёт первого запроса getUpdates, то есть момента, когда бот запущен и опрашивает сервер.
+     *
+     * @param timeoutSeconds Максимальное время ожидания.
+     * @return true, если бот подключился.
+     */
+    public boolean awaitFirstPoll(long timeoutSeconds) throws InterruptedException {
+        return firstPoll.await(timeoutSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Ставит в очередь текстовое сообщение пользователя.
+     *
+     * @param chatId Идентификатор чата.
+     * @param text   Текст сообщения.
+     */
+    public void sendText(long chatId, String text) {
+        ObjectNode message = message(chatId);
+        message.put("text", text);
+        enqueue(message);
+    }
+
+    /**
+     * Ставит в очередь сообщение пользователя с приложенным документом.
+     *
+     * @param chatId  Идентификатор чата.
+     * @param caption Подпись к документу (например, /upload).
+     */
+    public void sendDocument(long chatId, String caption) {
+        ObjectNode message = message(chatId);
+        message.put("caption", caption);
+        ObjectNode document = message.putObject("document");
+        document.put("file_id", "upload-file");
+        document.put("file_unique_id", "upload-file");
+        document.put("file_name", "upload.xlsx");
+        enqueue(message);
+    }
+
+    private ObjectNode message(long chatId) {
+        ObjectNode message = mapper.createObjectNode();
+        message.put("message_id", messageIds.incrementAndGet());
+        message.put("date", System.currentTimeMillis() / 1000);
+        ObjectNode chat = message.putObject("chat");
+        chat.put("id", chatId);
+        chat.put("type", "private");
+        ObjectNode from = message.putObject("from");
+        from.put("id", chatId);
+        from.put("is_bot", false);
+        from.put("first_name", "load-" + chatId);
+        return message;
+    }
+
+    private void enqueue(ObjectNode message) {
+        ObjectNode update = mapper.createObjectNode();
+        update.put("update_id", updateIds.incrementAndGet());
+        update.set("message", message);
+        synchronized (updates) {
+            updates.add(update);
+            updates.notifyAll();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (path.startsWith("/file/")) {
+                reply(exchange, "application/octet-stream", uploadFile);
+                return;
+            }
+            String method = path.substring(path.lastIndexOf('/') + 1);
+            JsonNode result = switch (method) {
+                case "getUpdates" -> getUpdates(json(exchange, body));
+                case "sendMessage", "editMessageText" -> sent(method, json(exchange, body).path("chat_id").asLong(), null);
+                case "sendDocument" -> sent(method, Long.parseLong(formField(body, "chat_id")), "export-file");
+                case "getFile" -> {
+                    ObjectNode file = mapper.createObjectNode();
+                    file.put("file_id", "upload-file");
+                    file.put("file_unique_id", "upload-file");
+                    file.put("file_path", FILE_PATH);
+                    yield file;
+                }
+                default -> mapper.getNodeFactory().booleanNode(true);
+            };
+            ObjectNode response = mapper.createObjectNode();
+            response.put("ok", true);
+            response.set("result", result);
+            reply(exchange, "application/json", mapper.writeValueAsBytes(response));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private JsonNode getUpdates(JsonNode request) {
+        firstPoll.countDown();
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(100);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(request.path("timeout").asInt(0));
+        ArrayNode result = mapper.createArrayNode();
+        synchronized (updates) {
+            // Подтверждённые обновления (id меньше offset) удаляются; выданные, но не подтверждённые, выдаются повторно
+            while (!updates.isEmpty() && updates.peekFirst().path("update_id").asLong() < offset) {
+                updates.pollFirst();
+            }
+            long remaining;
+            while (updates.isEmpty() && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(updates, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            for (ObjectNode update : updates) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                result.add(update);
+            }
+        }
+        return result;
+    }
+
+    private JsonNode sent(String method, long chatId, String documentId) {
+        listener.onResponse(chatId, method);
+        ObjectNode message = message(chatId);
+        message.remove("from");
+        if (documentId != null) {
+            ObjectNode document = message.putObject("document");
+            document.put("file_id", documentId);
+            document.put("file_unique_id", documentId);
+        }
+        return message;
+    }
+
+    private JsonNode json(HttpExchange exchange, byte[] body) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (body.length == 0 || contentType == null || !contentType.startsWith("application/json")) {
+            return mapper.createObjectNode();
+        }
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Извлекает текстовое поле из тела multipart/form-data (достаточно для chat_id в sendDocument).
+     */
+    private static String formField(byte[] body, String name) {
+        String text = new String(body, StandardCharsets.ISO_8859_1);
+        int header = text.indexOf("name=\"" + name + "\"");
+        int start = text.indexOf("\r\n\r\n", header) + 4;
+        int end = text.indexOf("\r\n", start);
+        return text.substring(start, end).trim();
+    }
+
+    private static void reply(HttpExchange exchange, String contentType, byte[] bytes) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,157 @@
+package com.pandev.telbot.loadtest;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный драйвер: имитирует множество чатов, отправляющих боту смешанные команды
+ * через {@link FakeBotApiServer}, и выводит пропускную способность и перцентили задержки.
+ *
+ * Каждый чат работает в замкнутом цикле: следующая команда отправляется после первого ответа
+ * бота на предыдущую. Задержка — время от постановки обновления в getUpdates до этого ответа.
+ *
+ * Запуск: сначала драйвер (gradle loadTest -Pchats=1000 -Pcommands=10 -Pport=8081), затем бот
+ * с --telegram.bot.api-url=http://127.0.0.1:8081/. Драйвер ждёт первый запрос бота и завершается
+ * после выполнения всех команд или по таймауту (-PtimeoutSeconds).
+ */
+public final class LoadDriver {
+    private static final String[] VIEW_TREE = {"/viewTree", "/help"};
+
+    private final FakeBotApiServer server;
+    private final int commandsPerChat;
+    private final ConcurrentHashMap<Long, Long> pendingSince = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, AtomicInteger> issued = new ConcurrentHashMap<>();
+    private final long[] latencies;
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final AtomicLong nameCounter = new AtomicLong();
+    private final CountDownLatch done;
+
+    private LoadDriver(int port, int chats, int commandsPerChat) throws IOException {
+        this.commandsPerChat = commandsPerChat;
+        this.latencies = new long[chats * commandsPerChat];
+        this.done = new CountDownLatch(chats);
+        this.server = new FakeBotApiServer(port, this::onResponse, uploadWorkbook());
+    }
+
+    /**
+     * @param args chats, commands, port, timeoutSeconds.
+     */
+    public static void main(String[] args) throws Exception {
+        int chats = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : 8081;
+        long timeoutSeconds = args.length > 3 ? Long.parseLong(args[3]) : 600;
+
+        LoadDriver driver = new LoadDriver(port, chats, commands);
+        System.out.println("Fake Bot API listening on " + driver.server.apiUrl());
+        System.out.println("Start the bot with --telegram.bot.api-url=" + driver.server.apiUrl());
+        try {
+            driver.run(chats, timeoutSeconds);
+        } finally {
+            driver.server.close();
+        }
+    }
+
+    private void run(int chats, long timeoutSeconds) throws InterruptedException {
+        if (!server.awaitFirstPoll(timeoutSeconds)) {
+            System.out.println("The bot did not connect within " + timeoutSeconds + " s");
+            return;
+        }
+        long started = System.nanoTime();
+        for (long chatId = 1; chatId <= chats; chatId++) {
+            issued.put(chatId, new AtomicInteger());
+            next(chatId);
+        }
+        boolean completed = done.await(timeoutSeconds, TimeUnit.SECONDS);
+        long elapsed = System.nanoTime() - started;
+        report(completed, elapsed);
+    }
+
+    /**
+     * Отправляет следующую команду чата; смесь: просмотр дерева и справка, добавление,
+     * поддерево, выгрузка и загрузка Excel.
+     */
+    private void next(long chatId) {
+        if (issued.get(chatId).getAndIncrement() >= commandsPerChat) {
+            done.countDown();
+            return;
+        }
+        pendingSince.put(chatId, System.nanoTime());
+        int roll = ThreadLocalRandom.current().nextInt(100);
+        if (roll < 45) {
+            server.sendText(chatId, VIEW_TREE[roll % 2]);
+        } else if (roll < 75) {
+            server.sendText(chatId, "/addElement \"load " + chatId + " " + nameCounter.incrementAndGet() + "\"");
+        } else if (roll < 90) {
+            server.sendText(chatId, "/viewTree \"load root\"");
+        } else if (roll < 97) {
+            server.sendText(chatId, "/download");
+        } else {
+            server.sendDocument(chatId, "/upload");
+        }
+    }
+
+    private void onResponse(long chatId, String method) {
+        Long since = pendingSince.remove(chatId);
+        if (since == null) {
+            return; // Дополнительный ответ на ту же команду (например, ошибка после документа)
+        }
+        int index = recorded.getAndIncrement();
+        if (index < latencies.length) {
+            latencies[index] = System.nanoTime() - since;
+        }
+        next(chatId);
+    }
+
+    private void report(boolean completed, long elapsedNanos) {
+        int count = Math.min(recorded.get(), latencies.length);
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%s: %d commands in %.1f s, throughput %.1f cmd/s%n",
+                completed ? "Completed" : "Timed out", count, seconds, count / seconds);
+        if (count > 0) {
+            System.out.printf("latency ms: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    sorted[count - 1] / 1e6);
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    /**
+     * Небольшая книга для /upload: корень "load root" и несколько дочерних категорий.
+     */
+    private static byte[] uploadWorkbook() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("Categories");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Category Name");
+            header.createCell(1).setCellValue("Parent Name");
+            Row root = sheet.createRow(1);
+            root.createCell(0).setCellValue("load root");
+            root.createCell(1).setCellValue("Root");
+            for (int i = 0; i < 20; i++) {
+                Row row = sheet.createRow(i + 2);
+                row.createCell(0).setCellValue("load child " + i);
+                row.createCell(1).setCellValue("load root");
+            }
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.pandev.telbot;
 
+import com.pandev.telbot.service.LegacyTenantMigration;
 import com.pandev.telbot.telegrambot.CategoryBot;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
@@ -15,8 +17,15 @@ public class TelbotApplication {
 
 	}
 
+	/**
+	 * Регистрирует бота в режиме long polling (telegram.bot.mode=polling, по умолчанию).
+	 * В режиме webhook обновления принимает WebhookController.
+	 * Бот регистрируется после передачи общего дерева чату (LegacyTenantMigration), чтобы обновления
+	 * не приходили раньше.
+	 */
 	@Bean
-	public TelegramBotsApi telegramBotsApi(CategoryBot categoryBot) {
+	@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "polling", matchIfMissing = true)
+	public TelegramBotsApi telegramBotsApi(CategoryBot categoryBot, LegacyTenantMigration legacyTenantMigration) {
 		try {
 			TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
 			botsApi.registerBot(categoryBot); // Spring сам передаст экземпляр CategoryBot
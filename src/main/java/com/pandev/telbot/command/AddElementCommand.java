@@ -1,11 +1,15 @@
 package com.pandev.telbot.command;
+import com.pandev.telbot.service.CategoryImportService;
 import com.pandev.telbot.service.CategoryService;
+import org.telegram.telegrambots.meta.api.objects.Update;
 /**
  * Команда для добавления элементов в категорию.
  *
- * Поддерживает два режима работы:
+ * Поддерживает три режима работы:
  *  - Добавление корневого элемента: /addElement <elementName>
  *  - Добавление дочернего элемента: /addElement <parentName> <childName>
+ *  - Добавление структуры: /addElement [parentName], а на следующих строках — элементы с отступами
+ *    по вложенности. Вся структура добавляется одной транзакцией с пакетной вставкой.
  */
 
 public class AddElementCommand implements Command {
@@ -29,6 +33,43 @@ public class AddElementCommand implements Command {
      */
     @Override
     public String execute(String[] args) {
+        return addSingle(args);
+    }
+
+    /**
+     * Выполняет команду добавления: однострочное сообщение обрабатывается как обычно,
+     * многострочное — как структура элементов с отступами.
+     *
+     * @param update Объект, содержащий информацию о входящем сообщении.
+     * @return Строка с результатом выполнения команды.
+     */
+    @Override
+    public String execute(Update update) {
+        String text = update.getMessage().getText();
+        int newline = text.indexOf('\n');
+        String[] args = CommandLine.parse(newline < 0 ? text : text.substring(0, newline)).args();
+        if (newline < 0 || text.substring(newline + 1).isBlank()) {
+            return addSingle(args);
+        }
+        if (args.length > 1) {
+            return "Для добавления структуры укажите в первой строке не больше одного родительского элемента.";
+        }
+        String parentName = args.length == 1 ? args[0] : null;
+        if (parentName != null && !categoryService.nameExists(parentName)) {
+            return "Родительский элемент '" + parentName + "' не найден.";
+        }
+        CategoryImportService.ImportResult result = categoryService.addOutline(text.substring(newline + 1), parentName);
+        return "Добавлено элементов: " + result.imported()
+                + (result.skipped() > 0 ? ". Пропущено (уже существуют или без родителя): " + result.skipped() : "")
+                + ".";
+    }
+
+    private String addSingle(String[] args) {
+        String newName = args.length == 1 ? args[0] : args.length == 2 ? args[1] : null;
+        if (newName != null && categoryService.nameExists(newName)) {
+            // Названия категорий уникальны без учёта регистра
+            return "Элемент '" + newName + "' уже существует.";
+        }
         if (args.length == 1) {
             // Добавляем корневой элемент
             String elementName = args[0];
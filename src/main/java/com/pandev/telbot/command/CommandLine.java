@@ -0,0 +1,86 @@
+package com.pandev.telbot.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разобранная командная строка: имя команды и аргументы.
+ *
+ * Разбор выполняется за один проход по символам без регулярных выражений:
+ *  - аргументы разделяются пробельными символами (несколько подряд считаются одним разделителем);
+ *  - название из нескольких слов заключается в кавычки: "Бытовая техника" или «Бытовая техника»;
+ *  - внутри прямых кавычек \" и \\ задают кавычку и обратную косую черту;
+ *  - суффикс @ИмяБота у команды (как в групповых чатах) отбрасывается.
+ *
+ * @param command Имя команды, например "/addElement" (пустая строка для пустого сообщения).
+ * @param args    Аргументы команды.
+ */
+public record CommandLine(String command, String[] args) {
+    private static final String[] NO_ARGS = new String[0];
+
+    /**
+     * Разбирает текст сообщения.
+     *
+     * @param text Текст сообщения или подпись к документу.
+     * @return Разобранная командная строка.
+     */
+    public static CommandLine parse(String text) {
+        int length = text.length();
+        int i = skipWhitespace(text, 0);
+        int start = i;
+        while (i < length && !Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        int end = i;
+        int at = text.indexOf('@', start);
+        if (at > start && at < end) {
+            end = at;
+        }
+        String command = text.substring(start, end);
+
+        i = skipWhitespace(text, i);
+        if (i == length) {
+            return new CommandLine(command, NO_ARGS);
+        }
+        List<String> args = new ArrayList<>(4);
+        StringBuilder quoted = null;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '«') {
+                char close = c == '"' ? '"' : '»';
+                if (quoted == null) {
+                    quoted = new StringBuilder();
+                } else {
+                    quoted.setLength(0);
+                }
+                i++;
+                while (i < length && text.charAt(i) != close) {
+                    char q = text.charAt(i);
+                    if (q == '\\' && close == '"' && i + 1 < length
+                            && (text.charAt(i + 1) == '"' || text.charAt(i + 1) == '\\')) {
+                        q = text.charAt(++i);
+                    }
+                    quoted.append(q);
+                    i++;
+                }
+                i++; // Закрывающая кавычка (незакрытая кавычка захватывает остаток строки)
+                args.add(quoted.toString());
+            } else {
+                int argStart = i;
+                while (i < length && !Character.isWhitespace(text.charAt(i))) {
+                    i++;
+                }
+                args.add(text.substring(argStart, i));
+            }
+            i = skipWhitespace(text, i);
+        }
+        return new CommandLine(command, args.toArray(NO_ARGS));
+    }
+
+    private static int skipWhitespace(String text, int i) {
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
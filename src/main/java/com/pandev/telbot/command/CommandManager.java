@@ -1,6 +1,9 @@
 package com.pandev.telbot.command;
 
+import com.pandev.telbot.metrics.TelbotMetrics;
 import com.pandev.telbot.service.CategoryService;
+import com.pandev.telbot.telegrambot.OutboundQueue;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
 import java.util.HashMap;
@@ -13,13 +16,45 @@ import java.util.Map;
  * Он поддерживает два способа выполнения команд:
  *  - **Использование массива аргументов:** Для простых команд с фиксированным набором аргументов.
  *  - **Использование объекта `Update`:** Для более сложных команд, требующих доступа к полной информации о входящем сообщении.
+ *
+ * Способ вызова указывается при регистрации команды в таблице маршрутов, поэтому {@link #route(Update)}
+ * не содержит проверок по именам команд. Текст разбирается {@link CommandLine} без регулярных выражений.
  */
 public class CommandManager {
+    private static final String UNKNOWN_COMMAND =
+            "Неизвестная команда. Введите /help для получения списка доступных команд.";
+
+    /**
+     * Способ передачи входных данных команде.
+     */
+    public enum Input {
+        /** Команда получает разобранные аргументы: {@link Command#execute(String[])}. */
+        ARGS,
+        /** Команда получает обновление целиком: {@link Command#execute(Update)}. */
+        UPDATE
+    }
+
+    /**
+     * Маршрут: команда и способ её вызова.
+     *
+     * @param command Команда.
+     * @param input   Способ передачи входных данных.
+     */
+    public record Route(Command command, Input input) {
+    }
+
+    /**
+     * Таблица маршрутов.
+     * Ключ - имя команды (например, "/viewTree"), значение - команда и способ её вызова.
+     */
+    private final Map<String, Route> routes = new HashMap<>();
+
+    private final TelbotMetrics metrics;
+
     /**
-     * Хранилище для зарегистрированных команд.
-     * Ключ - имя команды (например, "/viewTree"), значение - экземпляр класса, реализующего интерфейс Command.
+     * Команда просмотра дерева; дополнительно обрабатывает нажатия inline-кнопок навигации.
      */
-    private final Map<String, Command> commands = new HashMap<>();
+    private final ViewTreeCommand viewTreeCommand;
 
     /**
      * Конструктор класса.
@@ -27,13 +62,48 @@ public class CommandManager {
      * Инициализирует хранилище команд и регистрирует доступные команды.
      *
      * @param categoryService Сервис для работы с категориями.
+     * @param outboundQueue   Очередь исходящих запросов для команд, отвечающих не только текстом.
+     * @param metrics         Метрики выполнения команд.
      */
-    public CommandManager(CategoryService categoryService) {
-        commands.put("/viewTree", new ViewTreeCommand(categoryService));
-        commands.put("/addElement", new AddElementCommand(categoryService));
-        commands.put("/removeElement", new RemoveElementCommand(categoryService));
-        commands.put("/help", new HelpCommand());
-        commands.put("/download", new DownloadCommand(categoryService));
+    public CommandManager(CategoryService categoryService, OutboundQueue outboundQueue, TelbotMetrics metrics) {
+        this.metrics = metrics;
+        this.viewTreeCommand = new ViewTreeCommand(categoryService, outboundQueue);
+        register("/viewTree", viewTreeCommand, Input.UPDATE);
+        register("/addElement", new AddElementCommand(categoryService), Input.UPDATE);
+        register("/removeElement", new RemoveElementCommand(categoryService), Input.ARGS);
+        register("/move", new MoveCommand(categoryService), Input.ARGS);
+        register("/rename", new RenameCommand(categoryService), Input.ARGS);
+        register("/find", new FindCommand(categoryService), Input.ARGS);
+        register("/help", new HelpCommand(), Input.ARGS);
+        register("/download", new DownloadCommand(categoryService, outboundQueue, metrics), Input.UPDATE);
+        register("/upload", new UploadCommand(categoryService, metrics), Input.UPDATE);
+    }
+
+    private void register(String name, Command command, Input input) {
+        routes.put(name, new Route(command, input));
+    }
+
+    /**
+     * Выполняет команду из текста сообщения или подписи к документу (например, /upload с приложенным файлом).
+     *
+     * @param update Объект, содержащий информацию о входящем сообщении.
+     * @return Результат выполнения команды; null, если отвечать не нужно (ответ уже поставлен в очередь
+     *         или сообщение не содержит текста).
+     */
+    public String route(Update update) {
+        Message message = update.getMessage();
+        String text = message.hasText() ? message.getText() : message.getCaption();
+        if (text == null) {
+            return null;
+        }
+        CommandLine line = CommandLine.parse(text);
+        Route route = routes.get(line.command());
+        if (route == null) {
+            return UNKNOWN_COMMAND;
+        }
+        return metrics.timeCommand(line.command(), () -> route.input() == Input.UPDATE
+                ? route.command().execute(update)
+                : route.command().execute(line.args()));
     }
 
     /**
@@ -44,12 +114,8 @@ public class CommandManager {
      * @return Результат выполнения команды или сообщение об ошибке, если команда не найдена.
      */
     public String executeCommand(String commandName, String[] args) {
-        Command command = commands.get(commandName);
-        if (command != null) {
-            return command.execute(args);
-        } else {
-            return "Неизвестная команда. Введите /help для получения списка доступных команд.";
-        }
+        Route route = routes.get(commandName);
+        return route != null ? metrics.timeCommand(commandName, () -> route.command().execute(args)) : UNKNOWN_COMMAND;
     }
 
     /**
@@ -60,11 +126,22 @@ public class CommandManager {
      * @return Результат выполнения команды или сообщение об ошибке, если команда не найдена.
      */
     public String executeCommand(String commandName, Update update) {
-        Command command = commands.get(commandName);
-        if (command != null) {
-            return command.execute(update);
-        } else {
-            return "Неизвестная команда. Введите /help для получения списка доступных команд.";
+        Route route = routes.get(commandName);
+        return route != null ? metrics.timeCommand(commandName, () -> route.command().execute(update)) : UNKNOWN_COMMAND;
+    }
+
+    /**
+     * Обрабатывает нажатие inline-кнопки.
+     *
+     * @param update Объект, содержащий CallbackQuery.
+     * @return true, если нажатие обработано; false, если кнопка не относится ни к одной команде.
+     */
+    public boolean handleCallback(Update update) {
+        String data = update.getCallbackQuery().getData();
+        if (data != null && data.startsWith(ViewTreeCommand.CALLBACK_PREFIX)) {
+            viewTreeCommand.handleCallback(update);
+            return true;
         }
+        return false;
     }
-}
\ No newline at end of file
+}
@@ -1,29 +1,43 @@
 package com.pandev.telbot.command;
 
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.service.CategoryRenderCache;
 import com.pandev.telbot.service.CategoryService;
-import com.pandev.telbot.telegrambot.CategoryBot;
+import com.pandev.telbot.service.TreeFormat;
+import com.pandev.telbot.telegrambot.OutboundQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.io.ByteArrayInputStream;
-
 /**
- * Команда для загрузки Excel-файла с деревом категорий.
+ * Команда для загрузки файла с деревом категорий: /download [xlsx|csv|json].
+ *
+ * По умолчанию выгружается Excel. CSV и JSON записываются потоково и для больших деревьев
+ * выгружаются значительно быстрее и с постоянным потреблением памяти.
  *
  * Эта команда требует взаимодействия с пользователем и не может быть выполнена с помощью текстовых команд.
  * Для выполнения команды необходимо отправить соответствующее сообщение боту.
  */
 public class DownloadCommand implements Command {
+    private static final Logger log = LoggerFactory.getLogger(DownloadCommand.class);
+
     private final CategoryService categoryService;
+    private final OutboundQueue outboundQueue;
+    private final TelbotMetrics metrics;
 
     /**
      * Конструктор класса.
      *
-     * @param categoryService Сервис для работы с категориями, используемый для генерации Excel-файла.
+     * @param categoryService Сервис для работы с категориями, используемый для генерации файла.
+     * @param outboundQueue   Очередь исходящих запросов, через которую отправляется документ.
+     * @param metrics         Метрики, в которых учитываются ошибки генерации файла.
      */
-    public DownloadCommand(CategoryService categoryService) {
+    public DownloadCommand(CategoryService categoryService, OutboundQueue outboundQueue, TelbotMetrics metrics) {
         this.categoryService = categoryService;
+        this.outboundQueue = outboundQueue;
+        this.metrics = metrics;
     }
 
     /**
@@ -38,37 +52,50 @@ public class DownloadCommand implements Command {
     }
 
     /**
-     * Выполняет команду загрузки Excel-файла.
+     * Выполняет команду загрузки файла.
      *
-     * 1. Генерирует Excel-файл с деревом категорий, используя сервис CategoryService.
-     * 2. Создает объект SendDocument для отправки файла.
-     * 3. Устанавливает получателя, файл и описание файла.
-     * 4. Отправляет файл пользователю через бота.
+     * 1. Получает файл выбранного формата для текущей версии дерева из кэша (генерируется только после изменений дерева).
+     * 2. Если файл этой версии уже отправлялся, повторно использует его file_id без загрузки в Telegram.
+     * 3. Ставит документ в очередь отправки и возвращает файл кэшу после завершения отправки,
+     *    запоминая полученный file_id.
      *
      * @param update Объект, содержащий информацию о входящем сообщении.
-     * @return Сообщение об успешной отправке файла или сообщение об ошибке.
+     * @return null, если файл поставлен в очередь, или сообщение об ошибке.
      */
     @Override
     public String execute(Update update) {
+        Long chatId = update.getMessage().getChatId();
+        String[] args = CommandLine.parse(update.getMessage().getText()).args();
+        TreeFormat format = args.length > 0 ? TreeFormat.fromName(args[0]).orElse(null) : TreeFormat.XLSX;
+        if (format == null) {
+            return "Неизвестный формат. Используйте /download xlsx, /download csv или /download json.";
+        }
+        CategoryRenderCache.FileExport export;
         try {
-            // Генерация Excel-файла
-            byte[] fileBytes = categoryService.generateCategoryTreeExcel();
-
-            // Создание документа для отправки
-            InputFile inputFile = new InputFile(new ByteArrayInputStream(fileBytes), "categories.xlsx");
-            SendDocument sendDocument = new SendDocument();
-            sendDocument.setChatId(update.getMessage().getChatId());
-            sendDocument.setDocument(inputFile);
-            sendDocument.setCaption("Дерево категорий в Excel");
-
-            // Отправляем файл через бота
-            CategoryBot categoryBot = new CategoryBot(categoryService);
-            categoryBot.execute(sendDocument); // Замените `yourBotInstance` на объект вашего бота
-
-            return "Файл успешно отправлен.";
+            export = categoryService.acquireExport(format);
         } catch (Exception e) {
-            e.printStackTrace();
-            return "Ошибка при создании или отправке Excel-файла.";
+            log.error("Failed to export the tree as {}", format, e);
+            metrics.recordCommandError("/download");
+            return "Ошибка при создании или отправке файла.";
         }
+
+        // Создание документа для отправки: уже загруженный файл передаётся по file_id, новый читается с диска
+        InputFile inputFile = export.fileId() != null
+                ? new InputFile(export.fileId())
+                : new InputFile(export.file().toFile(), "categories." + format.extension());
+        SendDocument sendDocument = new SendDocument();
+        sendDocument.setChatId(chatId);
+        sendDocument.setDocument(inputFile);
+        sendDocument.setCaption(format == TreeFormat.XLSX ? "Дерево категорий в Excel" : "Дерево категорий в " + format);
+
+        // Отправляем файл через очередь; файл нужен до завершения отправки
+        outboundQueue.sendDocument(sendDocument).whenComplete((message, error) -> {
+            String fileId = message != null && message.hasDocument() ? message.getDocument().getFileId() : null;
+            categoryService.releaseExport(export, fileId);
+            if (error != null) {
+                outboundQueue.sendText(chatId, "Ошибка при создании или отправке файла.");
+            }
+        });
+        return null;
     }
-}
\ No newline at end of file
+}
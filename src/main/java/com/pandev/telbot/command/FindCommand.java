@@ -0,0 +1,66 @@
+package com.pandev.telbot.command;
+
+import com.pandev.telbot.service.CategoryService;
+import com.pandev.telbot.tree.CategorySearchIndex;
+import com.pandev.telbot.tree.CategoryTree;
+
+import java.util.List;
+
+/**
+ * Команда поиска категорий по названию: /find <запрос>.
+ *
+ * Ищет по поисковому индексу снимка дерева в памяти, без запросов к базе: сначала названия,
+ * начинающиеся с запроса, затем содержащие его, затем похожие (с опечатками).
+ * Для каждой найденной категории выводится путь от корня.
+ */
+public class FindCommand implements Command {
+    private static final int MAX_RESULTS = 20;
+
+    private final CategoryService categoryService;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryService Сервис для работы с категориями.
+     */
+    public FindCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Выполняет поиск категорий.
+     *
+     * @param args Массив аргументов команды; слова запроса объединяются через пробел.
+     * @return Список найденных категорий с путями или сообщение, что ничего не найдено.
+     */
+    @Override
+    public String execute(String[] args) {
+        if (args.length == 0) {
+            return "Укажите запрос. Использование: /find <запрос>";
+        }
+        String query = String.join(" ", args);
+        CategoryTree tree = categoryService.getTree();
+        // Запрашиваем на один результат больше, чтобы знать, что список обрезан
+        List<CategorySearchIndex.Match> matches = tree.searchIndex().search(query, MAX_RESULTS + 1);
+        if (matches.isEmpty()) {
+            return "По запросу '" + query + "' ничего не найдено.";
+        }
+
+        StringBuilder sb = new StringBuilder("Найдено по запросу '").append(query).append("':\n");
+        for (int i = 0; i < matches.size() && i < MAX_RESULTS; i++) {
+            List<CategoryTree.Node> path = tree.pathOf(matches.get(i).id());
+            sb.append("- ");
+            for (int j = 0; j < path.size(); j++) {
+                sb.append(j == 0 ? "" : " / ").append(path.get(j).name());
+            }
+            if (matches.get(i).kind() == CategorySearchIndex.MatchKind.FUZZY) {
+                sb.append(" (похоже)");
+            }
+            sb.append('\n');
+        }
+        if (matches.size() > MAX_RESULTS) {
+            sb.append("Показаны первые ").append(MAX_RESULTS).append(" результатов; уточните запрос.\n");
+        }
+        return sb.toString();
+    }
+}
@@ -17,11 +17,19 @@ public class HelpCommand implements Command {
         return """
                 Доступные команды:
                 /viewTree - Отображение дерева категорий.
+                /viewTree <element> - Отображение поддерева элемента.
                 /addElement <element> - Добавление корневого элемента.
                 /addElement <parent> <child> - Добавление дочернего элемента к родительскому.
+                /addElement [parent] и элементы на следующих строках с отступами - Добавление структуры одним сообщением.
                 /removeElement <element> - Удаление элемента и его дочерних элементов.
+                /move <element> <newParent> - Перенос элемента вместе с дочерними к новому родителю.
+                /move <element> - Перенос элемента в корень дерева.
+                /rename <old> <new> - Переименование элемента.
+                /find <query> - Поиск элементов по началу, части названия или похожему названию.
                 /help - Отображение этого справочного сообщения.
-                /download - загрузка документа Excel с деревом категорий
+                /download [xlsx|csv|json] - загрузка документа с деревом категорий (по умолчанию Excel)
+                /upload - загрузка дерева категорий из Excel, CSV или JSON (команда в подписи к документу)
+                Названия из нескольких слов заключайте в кавычки: /addElement "Бытовая техника"
                """;
     }
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.pandev.telbot.command;
+
+import com.pandev.telbot.service.CategoryService;
+
+/**
+ * Команда для переноса элемента вместе с его дочерними элементами.
+ *
+ * Поддерживает два режима работы:
+ *  - Перенос к новому родителю: /move <element> <newParent>
+ *  - Перенос в корень дерева: /move <element>
+ *
+ * Перенос элемента внутрь его собственного поддерева отклоняется.
+ */
+public class MoveCommand implements Command {
+    private final CategoryService categoryService;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryService Сервис для работы с категориями.
+     */
+    public MoveCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Выполняет команду переноса элемента.
+     *
+     * @param args Массив аргументов команды: элемент и (необязательно) новый родитель.
+     * @return Сообщение о результате переноса.
+     */
+    @Override
+    public String execute(String[] args) {
+        if (args.length != 1 && args.length != 2) {
+            return "Неверное количество аргументов. Использование: /move <element> <newParent> или /move <element>";
+        }
+        String name = args[0];
+        String newParent = args.length == 2 ? args[1] : null;
+        return switch (categoryService.moveCategory(name, newParent)) {
+            case MOVED -> newParent != null
+                    ? "Элемент '" + name + "' перенесён к родительскому '" + newParent + "'."
+                    : "Элемент '" + name + "' стал корневым.";
+            case NOT_FOUND -> "Элемент '" + name + "' не найден.";
+            case PARENT_NOT_FOUND -> "Родительский элемент '" + newParent + "' не найден.";
+            case CYCLE -> "Нельзя перенести элемент '" + name + "' внутрь его собственного поддерева.";
+        };
+    }
+}
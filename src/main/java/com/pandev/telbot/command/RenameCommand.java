@@ -0,0 +1,43 @@
+package com.pandev.telbot.command;
+
+import com.pandev.telbot.service.CategoryService;
+
+/**
+ * Команда для переименования элемента: /rename <old> <new>.
+ *
+ * Дочерние элементы сохраняются; новое название должно быть уникальным без учёта регистра.
+ */
+public class RenameCommand implements Command {
+    private final CategoryService categoryService;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryService Сервис для работы с категориями.
+     */
+    public RenameCommand(CategoryService categoryService) {
+        this.categoryService = categoryService;
+    }
+
+    /**
+     * Выполняет команду переименования элемента.
+     *
+     * @param args Массив аргументов команды: текущее и новое название.
+     * @return Сообщение о результате переименования.
+     */
+    @Override
+    public String execute(String[] args) {
+        if (args.length != 2) {
+            return "Неверное количество аргументов. Использование: /rename <old> <new>";
+        }
+        String oldName = args[0];
+        String newName = args[1];
+        // Смена только регистра допустима: это то же название в регистронезависимом индексе
+        if (!oldName.equalsIgnoreCase(newName) && categoryService.nameExists(newName)) {
+            return "Элемент '" + newName + "' уже существует.";
+        }
+        return categoryService.renameCategory(oldName, newName)
+                ? "Элемент '" + oldName + "' переименован в '" + newName + "'."
+                : "Элемент '" + oldName + "' не найден.";
+    }
+}
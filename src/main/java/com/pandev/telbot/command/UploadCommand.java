@@ -1,64 +1,88 @@
 package com.pandev.telbot.command;
 
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.service.CategoryImportService;
 import com.pandev.telbot.service.CategoryService;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.pandev.telbot.service.TreeFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.objects.Document;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
-import java.io.InputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
- * Команда не релизована
+ * Команда для загрузки дерева категорий из документа Excel, CSV или JSON.
  *
+ * Формат определяется по расширению имени файла (без расширения считается Excel).
+ * Документ сохраняется во временный файл и разбирается потоково (SAX для Excel,
+ * потоковые разборщики для CSV и JSON), а категории вставляются пакетами в одной транзакции.
+ * Формат Excel и CSV: первая колонка — название категории, вторая — название родительской категории;
+ * JSON — вложенные узлы, как в выгрузке /download json.
  */
 public class UploadCommand implements Command {
+    private static final Logger log = LoggerFactory.getLogger(UploadCommand.class);
+
     private final CategoryService categoryService;
+    private final TelbotMetrics metrics;
 
-    public UploadCommand(CategoryService categoryService) {
+    public UploadCommand(CategoryService categoryService, TelbotMetrics metrics) {
         this.categoryService = categoryService;
+        this.metrics = metrics;
     }
 
     @Override
     public String execute(String[] args) {
-        return "Команда /upload должна быть вызвана с прикрепленным Excel-документом.";
+        return "Команда /upload должна быть вызвана с прикрепленным документом Excel, CSV или JSON.";
     }
 
     @Override
     public String execute(Update update) {
         if (update.hasMessage() && update.getMessage().hasDocument()) {
+            Path file = null;
             try {
-                // Получение документа
-                String fileId = update.getMessage().getDocument().getFileId();
-
-                // Загрузка файла через Telegram API
-                InputStream fileStream = categoryService.downloadFile(fileId); // Реализуйте метод downloadFile
-
-                // Парсинг Excel-файла
-                Workbook workbook = new XSSFWorkbook(fileStream);
-                Sheet sheet = workbook.getSheetAt(0);
-
-                for (Row row : sheet) {
-                    // Считывание данных из строк (пример: первая колонка - название категории, вторая - родительская категория)
-                    Cell categoryNameCell = row.getCell(0);
-                    Cell parentCategoryCell = row.getCell(1);
-
-                    if (categoryNameCell == null || categoryNameCell.getStringCellValue().isEmpty()) {
-                        continue; // Пропускаем пустые строки
-                    }
+                // Получение документа и определение формата по расширению
+                Document document = update.getMessage().getDocument();
+                String fileName = document.getFileName();
+                TreeFormat format = TreeFormat.fromFileName(fileName).orElse(null);
+                if (format == null && fileName != null && fileName.contains(".")) {
+                    return "Неподдерживаемый формат файла. Загрузите документ .xlsx, .csv или .json.";
+                }
+                if (format == null) {
+                    format = TreeFormat.XLSX;
+                }
+                String fileId = document.getFileId();
 
-                    String categoryName = categoryNameCell.getStringCellValue();
-                    String parentCategory = parentCategoryCell != null ? parentCategoryCell.getStringCellValue() : null;
+                // Загрузка файла через Telegram API во временный файл
+                file = categoryService.downloadFile(fileId);
 
-                    // Сохранение в базе данных
-                    categoryService.saveCategory(categoryName, parentCategory); // Реализуйте метод saveCategory
-                }
+                // Потоковый разбор и пакетное сохранение в базе данных
+                CategoryImportService.ImportResult result = categoryService.importFile(file, format);
 
-                return "Файл успешно обработан и данные сохранены в базе.";
+                return "Файл успешно обработан: добавлено категорий — " + result.imported()
+                        + (result.skipped() > 0 ? ", пропущено строк (неизвестный родитель или повтор) — " + result.skipped() : "")
+                        + ".";
             } catch (Exception e) {
-                e.printStackTrace();
+                log.error("Failed to import uploaded file", e);
+                metrics.recordCommandError("/upload");
                 return "Ошибка при обработке файла: " + e.getMessage();
+            } finally {
+                deleteQuietly(file);
             }
         } else {
-            return "Пожалуйста, прикрепите Excel-документ с деревом категорий.";
+            return "Пожалуйста, прикрепите документ Excel, CSV или JSON с деревом категорий.";
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Failed to delete temporary file {}", file, e);
+            }
         }
     }
 }
@@ -1,61 +1,284 @@
 package com.pandev.telbot.command;
 
-import com.pandev.telbot.model.Category;
 import com.pandev.telbot.service.CategoryService;
+import com.pandev.telbot.telegrambot.OutboundQueue;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.TreePager;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 /**
  * Команда для отображения дерева категорий.
  *
  * При выполнении этой команды бот возвращает текстовое представление дерева категорий,
  * отформатированное с использованием отступов для визуализации иерархии.
+ *
+ * Поддерживает два режима работы:
+ *  - Всё дерево: /viewTree
+ *  - Поддерево элемента: /viewTree <elementName>
+ *
+ * Большие деревья выводятся постранично: каждая страница укладывается в лимит Telegram на длину
+ * сообщения, а под сообщением размещается inline-клавиатура «назад/вперёд/раскрыть узел».
+ * Для каждого чата хранится курсор, поэтому обработка нажатия строит только запрошенную страницу.
  */
 public class ViewTreeCommand implements Command {
+    /**
+     * Префикс данных inline-кнопок, которые обрабатывает эта команда.
+     */
+    public static final String CALLBACK_PREFIX = "tree:";
+
+    private static final String OPEN = "open:";
+    private static final String TITLE = "Категории:\n";
+    private static final int PAGE_CHARS = 4000; // Запас до лимита Telegram в 4096 символов
+    private static final int MAX_CURSORS = 10_000;
+    private static final int MAX_EXPAND_BUTTONS = 6;
+
     private final CategoryService categoryService;
+    private final OutboundQueue outboundQueue;
+
+    /**
+     * Курсоры постраничного просмотра по идентификатору чата (LRU с ограниченным размером).
+     */
+    private final Map<Long, TreeCursor> cursors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TreeCursor> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+
+    /**
+     * Позиция постраничного просмотра в чате.
+     */
+    private static final class TreeCursor {
+        private Long scopeId;
+        private long startId = -1;
+        private final Deque<Long> previous = new ArrayDeque<>();
+    }
 
     /**
      * Конструктор класса.
      *
      * @param categoryService Сервис для работы с категориями.
+     * @param outboundQueue   Очередь исходящих запросов, через которую выводятся страницы с клавиатурой.
      */
-    public ViewTreeCommand(CategoryService categoryService) {
+    public ViewTreeCommand(CategoryService categoryService, OutboundQueue outboundQueue) {
         this.categoryService = categoryService;
+        this.outboundQueue = outboundQueue;
     }
 
     /**
      * Выполняет команду отображения дерева категорий.
      *
-     * 1. Получает дерево категорий из сервиса.
-     * 2. Форматирует дерево в текстовое представление с использованием отступов.
-     * 3. Возвращает отформатированное представление дерева.
+     * Возвращает первую страницу дерева (или поддерева указанного элемента) без клавиатуры.
      *
-     * @param args Массив аргументов команды (не используется).
-     * @return Текстовое представление дерева категорий.
+     * @param args Массив аргументов команды; необязательный первый аргумент — корень поддерева.
+     * @return Текстовое представление первой страницы дерева категорий.
      */
     @Override
     public String execute(String[] args) {
-        List<Category> tree = categoryService.viewTree();
-        StringBuilder sb = new StringBuilder("Категории:\n");
-        for (Category category : tree) {
-            sb.append(formatCategory(category, 0));
+        CategoryTree tree = categoryService.getTree();
+        if (args.length == 1) {
+            Optional<CategoryTree.Node> root = tree.findByName(args[0]);
+            if (root.isEmpty()) {
+                return notFound(args[0]);
+            }
+            return categoryService.page(tree, root.get().id(), -1, TITLE, PAGE_CHARS).text();
         }
-        return sb.toString();
+        return categoryService.page(tree, null, -1, TITLE, PAGE_CHARS).text();
     }
 
     /**
-     * Рекурсивно форматирует категорию и ее дочерние категории с использованием отступов.
+     * Выполняет команду отображения дерева категорий с постраничной навигацией.
+     *
+     * 1. Сбрасывает курсор чата на начало дерева (или поддерева указанного элемента).
+     * 2. Строит первую страницу, не превышающую лимит Telegram.
+     * 3. Ставит страницу с inline-клавиатурой навигации в очередь отправки.
      *
-     * @param category Категория для форматирования.
-     * @param level Уровень вложенности категории.
-     * @return Отформатированное представление категории и ее дочерних категорий.
+     * @param update Объект, содержащий информацию о входящем сообщении.
+     * @return null, если страница поставлена в очередь, или сообщение об ошибке.
      */
-    private String formatCategory(Category category, int level) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("  ".repeat(level)).append("- ").append(category.getName()).append("\n");
-        for (Category child : category.getChildren()) {
-            sb.append(formatCategory(child, level + 1));
+    @Override
+    public String execute(Update update) {
+        Long chatId = update.getMessage().getChatId();
+        String[] args = CommandLine.parse(update.getMessage().getText()).args();
+        CategoryTree tree = categoryService.getTree();
+
+        TreeCursor cursor = new TreeCursor();
+        if (args.length > 0) {
+            String name = String.join(" ", args); // Название без кавычек тоже может состоять из нескольких слов
+            Optional<CategoryTree.Node> root = tree.findByName(name);
+            if (root.isEmpty()) {
+                return notFound(name);
+            }
+            cursor.scopeId = root.get().id();
         }
-        return sb.toString();
+        TreePager.Page page = categoryService.page(tree, cursor.scopeId, -1, TITLE, PAGE_CHARS);
+        cursor.startId = page.startId();
+        synchronized (cursors) {
+            cursors.put(chatId, cursor);
+        }
+
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(page.text());
+        message.setReplyMarkup(keyboard(tree, cursor, page));
+        outboundQueue.execute(chatId, message).exceptionally(e -> {
+            outboundQueue.sendText(chatId, "Ошибка при отправке дерева категорий.");
+            return null;
+        });
+        return null;
+    }
+
+    /**
+     * Обрабатывает нажатие inline-кнопки навигации: сдвигает курсор чата
+     * и заменяет текст сообщения запрошенной страницей.
+     * Нажатие с неизвестными данными или на узел, которого уже нет, только подтверждается без ответа в чат.
+     *
+     * @param update Обновление с CallbackQuery, данные которого начинаются с {@link #CALLBACK_PREFIX}.
+     */
+    public void handleCallback(Update update) {
+        CallbackQuery query = update.getCallbackQuery();
+        String data = query.getData();
+        String action = data != null && data.startsWith(CALLBACK_PREFIX) ? data.substring(CALLBACK_PREFIX.length()) : "";
+        CategoryTree tree = categoryService.getTree();
+        if (query.getMessage() == null || !isValidAction(tree, action)) {
+            outboundQueue.execute(null, new AnswerCallbackQuery(query.getId()));
+            return;
+        }
+        Long chatId = query.getMessage().getChatId();
+
+        TreeCursor cursor;
+        synchronized (cursors) {
+            cursor = cursors.computeIfAbsent(chatId, id -> new TreeCursor());
+        }
+        TreePager.Page page;
+        synchronized (cursor) {
+            page = move(tree, cursor, action);
+        }
+
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId.toString());
+        edit.setMessageId(query.getMessage().getMessageId());
+        edit.setText(page.text());
+        edit.setReplyMarkup(keyboard(tree, cursor, page));
+        outboundQueue.execute(chatId, edit);
+        outboundQueue.execute(null, new AnswerCallbackQuery(query.getId())); // Ответ на нажатие не ограничен лимитом чата
+    }
+
+    /**
+     * Применяет действие навигации к курсору и строит новую текущую страницу.
+     */
+    private TreePager.Page move(CategoryTree tree, TreeCursor cursor, String action) {
+        if (action.equals("next")) {
+            TreePager.Page current = categoryService.page(tree, cursor.scopeId, cursor.startId, TITLE, PAGE_CHARS);
+            if (current.hasNext()) {
+                cursor.previous.push(current.startId());
+                cursor.startId = current.nextId();
+            }
+        } else if (action.equals("prev")) {
+            cursor.startId = cursor.previous.isEmpty() ? -1 : cursor.previous.pop();
+        } else if (action.equals("up")) {
+            CategoryTree.Node scope = cursor.scopeId == null ? null : tree.node(cursor.scopeId);
+            resetScope(cursor, scope == null ? null : scope.parentId());
+        } else if (action.startsWith(OPEN)) {
+            resetScope(cursor, parseId(action.substring(OPEN.length()))); // Проверено в isValidAction
+        }
+        TreePager.Page page = categoryService.page(tree, cursor.scopeId, cursor.startId, TITLE, PAGE_CHARS);
+        if (page.startId() != cursor.startId) {
+            // Узел, с которого начиналась страница, удалён или перемещён: начинаем поддерево заново.
+            cursor.previous.clear();
+            cursor.startId = page.startId();
+        }
+        return page;
+    }
+
+    /**
+     * Проверяет данные кнопки: кнопки приходят от клиента и могут быть устаревшими или подделанными.
+     */
+    private static boolean isValidAction(CategoryTree tree, String action) {
+        if (action.equals("next") || action.equals("prev") || action.equals("up")) {
+            return true;
+        }
+        if (!action.startsWith(OPEN)) {
+            return false;
+        }
+        Long id = parseId(action.substring(OPEN.length()));
+        return id != null && tree.node(id) != null;
+    }
+
+    /**
+     * @return Число из данных кнопки или null, если это не число.
+     */
+    private static Long parseId(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void resetScope(TreeCursor cursor, Long scopeId) {
+        cursor.scopeId = scopeId;
+        cursor.startId = -1;
+        cursor.previous.clear();
+    }
+
+    /**
+     * Строит inline-клавиатуру страницы: навигация, раскрытие узлов верхнего уровня и возврат к родителю.
+     */
+    private static InlineKeyboardMarkup keyboard(CategoryTree tree, TreeCursor cursor, TreePager.Page page) {
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+
+        List<InlineKeyboardButton> navigation = new ArrayList<>();
+        if (!cursor.previous.isEmpty()) {
+            navigation.add(button("◀ Назад", "prev"));
+        }
+        if (page.hasNext()) {
+            navigation.add(button("Вперёд ▶", "next"));
+        }
+        if (!navigation.isEmpty()) {
+            rows.add(navigation);
+        }
+
+        List<InlineKeyboardButton> expandRow = new ArrayList<>();
+        for (int i = 0; i < page.expandable().size() && i < MAX_EXPAND_BUTTONS; i++) {
+            CategoryTree.Node node = page.expandable().get(i);
+            expandRow.add(button("▸ " + node.name(), OPEN + node.id()));
+            if (expandRow.size() == 2) {
+                rows.add(expandRow);
+                expandRow = new ArrayList<>();
+            }
+        }
+        if (!expandRow.isEmpty()) {
+            rows.add(expandRow);
+        }
+
+        if (cursor.scopeId != null && tree.node(cursor.scopeId) != null) {
+            rows.add(List.of(button("⬆ Вверх", "up")));
+        }
+        return new InlineKeyboardMarkup(rows);
+    }
+
+    private static InlineKeyboardButton button(String text, String action) {
+        InlineKeyboardButton button = new InlineKeyboardButton(text);
+        button.setCallbackData(CALLBACK_PREFIX + action);
+        return button;
+    }
+
+    private static String notFound(String name) {
+        return "Элемент '" + name + "' не найден.";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.pandev.telbot.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Считает SQL-операторы, которые Hibernate выполняет в текущем потоке.
+ *
+ * Подключается свойством spring.jpa.properties.hibernate.session_factory.statement_inspector.
+ * Команда выполняется целиком в одном рабочем потоке, поэтому разница счётчика до и после команды
+ * равна числу запросов Hibernate, которые она выполнила; резкий рост указывает на N+1.
+ * Запросы через JdbcTemplate (пакетный импорт) сюда не попадают.
+ */
+public class QueryCountingInspector implements StatementInspector {
+    private static final ThreadLocal<long[]> COUNT = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * @return Количество операторов Hibernate, выполненных текущим потоком с момента его запуска.
+     */
+    public static long currentCount() {
+        return COUNT.get()[0];
+    }
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+}
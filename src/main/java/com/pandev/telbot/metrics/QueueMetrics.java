@@ -0,0 +1,39 @@
+package com.pandev.telbot.metrics;
+
+import com.pandev.telbot.telegrambot.OutboundQueue;
+import com.pandev.telbot.telegrambot.UpdateDispatcher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Публикует глубину очередей: входящие обновления в диспетчере (telbot.dispatcher.pending)
+ * и исходящие запросы к Bot API (telbot.outbound.pending).
+ */
+@Component
+public class QueueMetrics implements MeterBinder {
+    private final UpdateDispatcher dispatcher;
+    private final OutboundQueue outboundQueue;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param dispatcher    Диспетчер входящих обновлений.
+     * @param outboundQueue Очередь исходящих запросов.
+     */
+    public QueueMetrics(UpdateDispatcher dispatcher, OutboundQueue outboundQueue) {
+        this.dispatcher = dispatcher;
+        this.outboundQueue = outboundQueue;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("telbot.dispatcher.pending", dispatcher, UpdateDispatcher::pendingCount)
+                .description("Updates waiting for or being processed by workers")
+                .register(registry);
+        Gauge.builder("telbot.outbound.pending", outboundQueue, OutboundQueue::pendingCount)
+                .description("Bot API requests waiting to be sent or in flight")
+                .register(registry);
+    }
+}
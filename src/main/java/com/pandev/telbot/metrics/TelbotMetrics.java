@@ -0,0 +1,125 @@
+package com.pandev.telbot.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Метрики бота (Micrometer), доступные через /actuator/prometheus.
+ *
+ *  - telbot.command — время выполнения команды (тег command);
+ *  - telbot.command.queries — число SQL-операторов Hibernate на команду (тег command);
+ *  - telbot.command.errors — команды, завершившиеся исключением или ответом об ошибке (тег command);
+ *  - telbot.telegram.api — время вызова Bot API (теги method, outcome);
+ *  - telbot.outbound.latency — время от постановки ответа в очередь до его отправки;
+ *  - telbot.export / telbot.export.rows — генерация файла дерева и количество строк (тег format);
+ *  - telbot.import / telbot.import.rows — импорт файла и количество строк (теги format, result).
+ * Глубина очередей публикуется {@link QueueMetrics}.
+ */
+@Component
+public class TelbotMetrics {
+    private final MeterRegistry registry;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param registry Реестр метрик.
+     */
+    public TelbotMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Выполняет команду, измеряя время, число запросов Hibernate и ошибки.
+     *
+     * @param command Имя команды (только зарегистрированные имена, чтобы не раздувать число тегов).
+     * @param body    Выполнение команды.
+     * @return Результат команды.
+     */
+    public String timeCommand(String command, Supplier<String> body) {
+        long queriesBefore = QueryCountingInspector.currentCount();
+        long start = System.nanoTime();
+        try {
+            return body.get();
+        } catch (RuntimeException e) {
+            recordCommandError(command);
+            throw e;
+        } finally {
+            Timer.builder("telbot.command").tag("command", command)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            DistributionSummary.builder("telbot.command.queries").tag("command", command)
+                    .register(registry)
+                    .record(QueryCountingInspector.currentCount() - queriesBefore);
+        }
+    }
+
+    /**
+     * Учитывает ошибку команды, которая перехватила исключение сама и ответила пользователю сообщением.
+     *
+     * @param command Имя команды.
+     */
+    public void recordCommandError(String command) {
+        Counter.builder("telbot.command.errors").tag("command", command).register(registry).increment();
+    }
+
+    /**
+     * Записывает длительность вызова Bot API.
+     *
+     * @param method  Имя метода Bot API, например SendMessage.
+     * @param nanos   Длительность в наносекундах.
+     * @param success true, если вызов завершился успешно.
+     */
+    public void recordTelegramCall(String method, long nanos, boolean success) {
+        Timer.builder("telbot.telegram.api").tag("method", method).tag("outcome", success ? "success" : "error")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Записывает время от постановки ответа в очередь до завершения его отправки.
+     *
+     * @param nanos Длительность в наносекундах.
+     */
+    public void recordOutboundLatency(long nanos) {
+        Timer.builder("telbot.outbound.latency")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Записывает генерацию файла дерева.
+     *
+     * @param format Формат файла (xlsx, csv, json).
+     * @param nanos  Длительность в наносекундах.
+     * @param rows   Количество строк категорий.
+     */
+    public void recordExport(String format, long nanos, int rows) {
+        Timer.builder("telbot.export").tag("format", format).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("telbot.export.rows").tag("format", format).register(registry).record(rows);
+    }
+
+    /**
+     * Записывает импорт файла дерева.
+     *
+     * @param format   Формат файла (xlsx, csv, json).
+     * @param nanos    Длительность разбора и вставки в наносекундах.
+     * @param imported Количество добавленных строк.
+     * @param skipped  Количество пропущенных строк.
+     */
+    public void recordImport(String format, long nanos, int imported, int skipped) {
+        Timer.builder("telbot.import").tag("format", format).register(registry).record(nanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("telbot.import.rows").tag("format", format).tag("result", "imported")
+                .register(registry).record(imported);
+        DistributionSummary.builder("telbot.import.rows").tag("format", format).tag("result", "skipped")
+                .register(registry).record(skipped);
+    }
+}
@@ -2,8 +2,10 @@ package com.pandev.telbot.model;
 
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
-import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -12,23 +14,48 @@ import java.util.List;
  * Сущность, представляющая категорию.
  * Категория может иметь иерархическую структуру с родительскими и дочерними отношениями.
  * Каждая категория имеет уникальный идентификатор, название, родительскую категорию и список дочерних категорий.
+ * Категории принадлежат арендатору (чату): деревья разных чатов не пересекаются ни по названиям, ни по запросам.
+ *
+ * equals и hashCode не переопределяются (тождество объектов, как рекомендует Hibernate), а toString
+ * не включает родителя и детей: сгенерированные по всем полям методы обходили бы цикл parent/children
+ * и инициализировали ленивые коллекции. Отрисовка и экспорт работают со снимком
+ * {@link com.pandev.telbot.tree.CategoryTree}, а не с сущностями.
  */
 @Entity
-@Data
+@Table(name = "category", indexes = {
+        // Корни дерева арендатора: начальная часть рекурсивной загрузки снимка.
+        @Index(name = "idx_category_tenant_parent", columnList = "tenant_id, parent_id"),
+        // Поиск среди соседей: дети конкретного родителя по названию.
+        @Index(name = "idx_category_parent_name", columnList = "parent_id, name"),
+        // Поддерево — непрерывный диапазон путей: выборка, подсчёт и удаление одним запросом.
+        @Index(name = "idx_category_path", columnList = "path")
+})
+@Getter
+@Setter
+@ToString(exclude = {"parent", "children"})
 @NoArgsConstructor
 @AllArgsConstructor
 public class Category {
 
     /**
      * Уникальный идентификатор категории.
-     * Генерируется автоматически с использованием стратегии IDENTITY.
+     * Генерируется последовательностью category_seq блоками (pooled), что позволяет
+     * Hibernate отправлять INSERT JDBC-пакетами.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @CategoryId
     private Long id;
 
+    /**
+     * Арендатор (идентификатор чата), которому принадлежит категория; 0 — общее дерево,
+     * созданное до разделения по чатам. Родитель и потомки всегда принадлежат тому же арендатору.
+     */
+    @Column(name = "tenant_id", nullable = false, columnDefinition = "bigint DEFAULT 0 NOT NULL")
+    private long tenantId;
+
     /**
      * Название категории.
+     * Уникально без учёта регистра в пределах арендатора (индекс ux_category_tenant_name_lower, см. schema.sql).
      */
     private String name;
 
@@ -40,6 +67,14 @@ public class Category {
     @JoinColumn(name = "parent_id")
     private Category parent;
 
+    /**
+     * Материализованный путь от корня, например "/1/17/203/".
+     * Заполняется триггером базы данных при вставке и при смене родителя (см. schema.sql),
+     * поэтому Hibernate его не записывает. Сортировка "C" делает путь поддерева непрерывным диапазоном индекса.
+     */
+    @Column(name = "path", insertable = false, updatable = false, columnDefinition = "text COLLATE \"C\"")
+    private String path;
+
     /**
      * Список дочерних категорий, связанных с этой категорией.
      * Связь управляется каскадными операциями, используется ленивый (LAZY) режим загрузки.
@@ -56,6 +91,17 @@ public class Category {
         this.name = name;
     }
 
+    /**
+     * Конструктор для создания категории арендатора с заданным названием.
+     *
+     * @param tenantId Арендатор, которому принадлежит категория.
+     * @param name     Название категории.
+     */
+    public Category(long tenantId, String name) {
+        this.tenantId = tenantId;
+        this.name = name;
+    }
+
     /**
      * Устанавливает родительскую категорию для текущей категории.
      *
@@ -0,0 +1,18 @@
+package com.pandev.telbot.model;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Помечает идентификатор, который выдаётся {@link CategoryIdGenerator}: последовательность category_seq
+ * с pooled-оптимизатором.
+ */
+@IdGeneratorType(CategoryIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface CategoryId {
+}
@@ -0,0 +1,64 @@
+package com.pandev.telbot.model;
+
+import java.util.function.Supplier;
+
+/**
+ * Арендатор (владелец дерева категорий), от имени которого выполняется текущая команда.
+ *
+ * У каждого чата своё дерево: идентификатором арендатора служит идентификатор чата.
+ * Значение устанавливается на время обработки обновления в рабочем потоке ({@link #call(long, Supplier)})
+ * и читается хранилищем снимков, кэшами и сервисами; репозитории получают его явным параметром.
+ * Вне обработки обновления (бенчмарки, импорт из консоли) используется {@link #DEFAULT_TENANT} —
+ * ему принадлежат категории, созданные до разделения деревьев по чатам.
+ */
+public final class TenantContext {
+    /** Арендатор по умолчанию: общее дерево, существовавшее до разделения по чатам. */
+    public static final long DEFAULT_TENANT = 0;
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private TenantContext() {
+    }
+
+    /**
+     * @return Идентификатор текущего арендатора или {@link #DEFAULT_TENANT}, если он не установлен.
+     */
+    public static long current() {
+        Long tenantId = CURRENT.get();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * Выполняет действие от имени арендатора и восстанавливает прежнее значение.
+     *
+     * @param tenantId Идентификатор арендатора.
+     * @param action   Действие.
+     * @return Результат действия.
+     */
+    public static <T> T call(long tenantId, Supplier<T> action) {
+        Long previous = CURRENT.get();
+        CURRENT.set(tenantId);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Выполняет действие от имени арендатора и восстанавливает прежнее значение.
+     *
+     * @param tenantId Идентификатор арендатора.
+     * @param action   Действие.
+     */
+    public static void run(long tenantId, Runnable action) {
+        call(tenantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,143 @@
+package com.pandev.telbot.repository;
+
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.tree.CategoryTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Разрешение названий категорий в идентификаторы через ограниченный LRU-кэш перед репозиторием.
+ *
+ * Попадание в кэш не требует обращения к базе; промах выполняет индексированный запрос
+ * {@link CategoryRepository#findIdByName(long, String)} и запоминает результат. Отсутствующие названия
+ * не кэшируются. Операции записи должны инвалидировать затронутые записи.
+ * Изменения кэша, сделанные внутри транзакции, применяются только после её фиксации: до неё другие потоки
+ * читают из базы прежнее состояние, и кэш должен совпадать с ним, а откаченная запись не должна в нём остаться.
+ * Ключ кэша — пара (арендатор, название); арендатор берётся из {@link TenantContext}.
+ * Размер задаётся свойством telbot.lookup.cache-size; значение 0 отключает кэш.
+ */
+@Component
+public class CategoryIdLookup {
+    private final CategoryRepository categoryRepository;
+    private final int maxSize;
+    private final Map<Key, Long> cache;
+
+    private record Key(long tenantId, String name) {
+    }
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryRepository Репозиторий категорий.
+     * @param maxSize            Максимальное количество записей в кэше.
+     */
+    public CategoryIdLookup(CategoryRepository categoryRepository,
+                            @Value("${telbot.lookup.cache-size:10000}") int maxSize) {
+        this.categoryRepository = categoryRepository;
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Long> eldest) {
+                return size() > CategoryIdLookup.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Находит идентификатор категории текущего арендатора по названию без учёта регистра.
+     *
+     * @param name Название категории.
+     * @return Optional с идентификатором, если категория найдена.
+     */
+    public Optional<Long> findIdByName(String name) {
+        long tenantId = TenantContext.current();
+        if (maxSize <= 0) {
+            return categoryRepository.findIdByName(tenantId, name);
+        }
+        Key key = key(tenantId, name);
+        Long cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Long> found = categoryRepository.findIdByName(tenantId, name);
+        found.ifPresent(id -> {
+            synchronized (cache) {
+                cache.put(key, id);
+            }
+        });
+        return found;
+    }
+
+    /**
+     * Запоминает соответствие для созданной или переименованной категории после фиксации текущей транзакции.
+     *
+     * @param name Название категории.
+     * @param id   Идентификатор категории.
+     */
+    public void put(String name, long id) {
+        if (maxSize > 0) {
+            Key key = key(TenantContext.current(), name);
+            afterCommit(() -> {
+                synchronized (cache) {
+                    cache.put(key, id);
+                }
+            });
+        }
+    }
+
+    /**
+     * Удаляет запись для указанного названия после фиксации текущей транзакции.
+     *
+     * @param name Название категории.
+     */
+    public void invalidate(String name) {
+        Key key = key(TenantContext.current(), name);
+        afterCommit(() -> {
+            synchronized (cache) {
+                cache.remove(key);
+            }
+        });
+    }
+
+    /**
+     * Удаляет все записи текущего арендатора после фиксации текущей транзакции
+     * (например, после удаления поддерева, названия потомков которого неизвестны).
+     */
+    public void invalidateAll() {
+        long tenantId = TenantContext.current();
+        afterCommit(() -> {
+            synchronized (cache) {
+                cache.keySet().removeIf(key -> key.tenantId() == tenantId);
+            }
+        });
+    }
+
+    /**
+     * Выполняет действие после успешной фиксации текущей транзакции, а вне транзакции — сразу.
+     */
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Key key(long tenantId, String name) {
+        return new Key(tenantId, CategoryTree.normalize(name));
+    }
+}
@@ -0,0 +1,95 @@
+package com.pandev.telbot.repository;
+
+import com.pandev.telbot.model.CategoryIdGenerator;
+import com.pandev.telbot.tree.CategoryTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC-доступ к таблице категорий для массовых операций.
+ * Используется там, где построчный save() через JPA даёт слишком много обращений к базе.
+ */
+@Repository
+public class CategoryJdbcRepository {
+    private final JdbcTemplate jdbcTemplate;
+    private final int allocationSize;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param jdbcTemplate   Шаблон JDBC, работающий в общей с JPA транзакции.
+     * @param allocationSize Шаг последовательности category_seq; совпадает с размером блока Hibernate.
+     */
+    public CategoryJdbcRepository(JdbcTemplate jdbcTemplate,
+                                  @Value("${spring.jpa.properties." + CategoryIdGenerator.ALLOCATION_SIZE_SETTING
+                                          + ":" + CategoryIdGenerator.DEFAULT_ALLOCATION_SIZE + "}") int allocationSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.allocationSize = allocationSize;
+    }
+
+    /**
+     * Резервирует указанное количество идентификаторов одним запросом к последовательности category_seq.
+     *
+     * Как и pooled-оптимизатор Hibernate, каждое значение последовательности v считается верхней
+     * границей блока (v - allocationSize, v], поэтому блоки не пересекаются с идентификаторами,
+     * выданными через JPA.
+     *
+     * @param count Количество идентификаторов.
+     * @return Зарезервированные идентификаторы.
+     */
+    public List<Long> allocateIds(int count) {
+        int blocks = (count + allocationSize - 1) / allocationSize;
+        List<Long> highValues = jdbcTemplate.queryForList(
+                "SELECT nextval('" + CategoryIdGenerator.SEQUENCE_NAME + "') FROM generate_series(1, ?)",
+                Long.class, blocks + 1);
+        List<Long> ids = new ArrayList<>(count);
+        for (Long high : highValues) {
+            for (long id = Math.max(1, high - allocationSize + 1); id <= high && ids.size() < count; id++) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Передаёт все категории одного арендатора другому, если у получателя ещё нет категорий
+     * (иначе названия могли бы совпасть в пределах арендатора). Выполняется одним оператором.
+     *
+     * @param fromTenantId Арендатор, у которого забираются категории.
+     * @param toTenantId   Арендатор, которому они передаются.
+     * @return Количество переданных категорий; 0, если передавать нечего или у получателя уже есть категории.
+     */
+    public int reassignTenant(long fromTenantId, long toTenantId) {
+        return jdbcTemplate.update("""
+                UPDATE category SET tenant_id = ?
+                WHERE tenant_id = ? AND NOT EXISTS (SELECT 1 FROM category WHERE tenant_id = ?)
+                """, toTenantId, fromTenantId, toTenantId);
+    }
+
+    /**
+     * Вставляет категории JDBC-пакетами. Идентификаторы должны быть заранее зарезервированы,
+     * а родитель должен предшествовать потомкам.
+     *
+     * @param tenantId  Арендатор, которому принадлежат категории.
+     * @param rows      Категории для вставки.
+     * @param batchSize Размер JDBC-пакета.
+     */
+    public void batchInsert(long tenantId, List<CategoryTree.Row> rows, int batchSize) {
+        jdbcTemplate.batchUpdate("INSERT INTO category (id, tenant_id, name, parent_id) VALUES (?, ?, ?, ?)",
+                rows, batchSize, (ps, row) -> {
+                    ps.setLong(1, row.id());
+                    ps.setLong(2, tenantId);
+                    ps.setString(3, row.name());
+                    if (row.parentId() != null) {
+                        ps.setLong(4, row.parentId());
+                    } else {
+                        ps.setNull(4, Types.BIGINT);
+                    }
+                });
+    }
+}
@@ -4,6 +4,9 @@ import com.pandev.telbot.model.Category;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -11,17 +14,34 @@ import java.util.Optional;
 /**
  * Репозиторий для работы с сущностью Category.
  * Предоставляет стандартные CRUD-операции и дополнительные методы для работы с категориями.
+ * Поиск по названию и загрузка деревьев ограничены арендатором (tenantId); операции по идентификатору
+ * получают id, уже найденный в пределах арендатора.
  */
 @Repository
 public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     /**
-     * Находит категорию по её названию.
+     * Находит категорию арендатора по её названию без учёта регистра.
+     * Условие (tenant_id, lower(name)) совпадает с выражением уникального индекса ux_category_tenant_name_lower.
      *
-     * @param name Название категории.
+     * @param tenantId Арендатор.
+     * @param name     Название категории.
      * @return Optional с категорией, если она найдена, или пустой Optional.
      */
-    Optional<Category> findByName(String name);
+    @Query(value = "SELECT * FROM category WHERE tenant_id = :tenantId AND lower(name) = lower(:name) ORDER BY id LIMIT 1",
+            nativeQuery = true)
+    Optional<Category> findByName(@Param("tenantId") long tenantId, @Param("name") String name);
+
+    /**
+     * Находит идентификатор категории арендатора по её названию без учёта регистра, не загружая сущность.
+     *
+     * @param tenantId Арендатор.
+     * @param name     Название категории.
+     * @return Optional с идентификатором, если категория найдена.
+     */
+    @Query(value = "SELECT id FROM category WHERE tenant_id = :tenantId AND lower(name) = lower(:name) ORDER BY id LIMIT 1",
+            nativeQuery = true)
+    Optional<Long> findIdByName(@Param("tenantId") long tenantId, @Param("name") String name);
 
     /**
      * Возвращает список всех категорий, подгружая связанные дочерние категории.
@@ -32,6 +52,115 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     @EntityGraph(attributePaths = {"children"})
     List<Category> findAll();
 
+    /**
+     * Загружает дерево категорий арендатора одним рекурсивным запросом.
+     * Корни выбираются по индексу idx_category_tenant_parent, потомки — по parent_id, поэтому
+     * строки других арендаторов не читаются. Строки упорядочены по глубине и id,
+     * поэтому родитель всегда предшествует потомкам.
+     *
+     * @param tenantId Арендатор.
+     * @return Плоский список строк (id, parent_id, name, depth).
+     */
+    @Query(value = """
+            WITH RECURSIVE tree AS (
+                SELECT c.id, c.parent_id, c.name, 0 AS depth
+                FROM category c
+                WHERE c.tenant_id = :tenantId AND c.parent_id IS NULL
+                UNION ALL
+                SELECT c.id, c.parent_id, c.name, t.depth + 1
+                FROM category c
+                JOIN tree t ON c.parent_id = t.id
+            )
+            SELECT id AS "id", parent_id AS "parentId", name AS "name", depth AS "depth"
+            FROM tree
+            ORDER BY depth, id
+            """, nativeQuery = true)
+    List<CategoryRow> findTreeRows(@Param("tenantId") long tenantId);
+
+    /**
+     * Возвращает количество категорий арендатора (по индексу idx_category_tenant_parent, без чтения названий)
+     * и ревизию его дерева.
+     *
+     * @param tenantId Арендатор.
+     * @return Характеристика дерева.
+     */
+    @Query(value = """
+            SELECT count(*) AS "count",
+                   COALESCE((SELECT revision FROM category_revision WHERE tenant_id = :tenantId), 0) AS "revision"
+            FROM category
+            WHERE tenant_id = :tenantId
+            """, nativeQuery = true)
+    TreeFingerprint fingerprint(@Param("tenantId") long tenantId);
+
+    /**
+     * Возвращает ревизию дерева арендатора: она растёт при каждом операторе, изменяющем его категории
+     * (триггеры trg_category_revision_*, см. schema.sql). Внутри транзакции после записи возвращает
+     * ревизию, которую получит эта транзакция при фиксации.
+     *
+     * @param tenantId Арендатор.
+     * @return Ревизия или 0, если дерево ещё не менялось.
+     */
+    @Query(value = """
+            SELECT COALESCE((SELECT revision FROM category_revision WHERE tenant_id = :tenantId), 0)
+            """, nativeQuery = true)
+    long revision(@Param("tenantId") long tenantId);
+
+    /**
+     * Удаляет категорию вместе со всем поддеревом одним запросом по диапазону путей,
+     * не загружая потомков в контекст персистентности.
+     * Ссылки parent_id проверяются в конце оператора, поэтому порядок удаления строк не важен.
+     *
+     * @param id Идентификатор корня поддерева.
+     * @return Количество удалённых категорий; 0, если категории нет.
+     */
+    @Modifying
+    @Query(value = """
+            DELETE FROM category c
+            USING (SELECT path FROM category WHERE id = :id) r
+            WHERE c.path >= r.path AND c.path < left(r.path, -1) || '0'
+            """, nativeQuery = true)
+    int deleteSubtree(@Param("id") long id);
+
+    /**
+     * Переносит категорию вместе с поддеревом к новому родителю одним UPDATE.
+     * Пути потомков переписывает триггер category_move_subtree (см. schema.sql), поэтому
+     * потомки не загружаются в контекст персистентности. Перенос не выполняется, если новый родитель
+     * лежит в поддереве переносимой категории (цикл).
+     *
+     * @param id       Идентификатор переносимой категории.
+     * @param parentId Идентификатор нового родителя.
+     * @return 1, если категория перенесена; 0, если её нет или перенос создал бы цикл.
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE category c SET parent_id = :parentId
+            WHERE c.id = :id
+              AND NOT EXISTS (SELECT 1 FROM category p
+                              WHERE p.id = :parentId AND p.path >= c.path AND p.path < left(c.path, -1) || '0')
+            """, nativeQuery = true)
+    int moveUnder(@Param("id") long id, @Param("parentId") long parentId);
+
+    /**
+     * Делает категорию корневой вместе с поддеревом одним UPDATE.
+     *
+     * @param id Идентификатор переносимой категории.
+     * @return 1, если категория перенесена; 0, если её нет.
+     */
+    @Modifying
+    @Query(value = "UPDATE category SET parent_id = NULL WHERE id = :id", nativeQuery = true)
+    int moveToRoot(@Param("id") long id);
+
+    /**
+     * Переименовывает категорию одним UPDATE без загрузки сущности.
+     *
+     * @param id   Идентификатор категории.
+     * @param name Новое название.
+     * @return 1, если категория переименована; 0, если её нет.
+     */
+    @Modifying
+    @Query(value = "UPDATE category SET name = :name WHERE id = :id", nativeQuery = true)
+    int rename(@Param("id") long id, @Param("name") String name);
+
     /**
      * Удаляет указанную категорию из базы данных.
      *
@@ -0,0 +1,28 @@
+package com.pandev.telbot.repository;
+
+/**
+ * Плоская проекция категории, возвращаемая рекурсивными запросами по дереву.
+ * Содержит только данные, необходимые для сборки дерева в памяти.
+ */
+public interface CategoryRow {
+
+    /**
+     * @return Идентификатор категории.
+     */
+    Long getId();
+
+    /**
+     * @return Идентификатор родительской категории или null для корня.
+     */
+    Long getParentId();
+
+    /**
+     * @return Название категории.
+     */
+    String getName();
+
+    /**
+     * @return Глубина категории относительно корня выборки (0 — корень).
+     */
+    Integer getDepth();
+}
@@ -0,0 +1,19 @@
+package com.pandev.telbot.repository;
+
+/**
+ * Краткая характеристика дерева арендатора в базе: по ней проверяется,
+ * что снимок, восстановленный из локального журнала, не отстал от базы.
+ * Ревизия меняется при любой записи, в том числе при переименовании и переносе.
+ */
+public interface TreeFingerprint {
+
+    /**
+     * @return Количество категорий арендатора.
+     */
+    Long getCount();
+
+    /**
+     * @return Ревизия дерева арендатора ({@link CategoryRepository#revision(long)}).
+     */
+    Long getRevision();
+}
@@ -0,0 +1,154 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.DepthFirstCursor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый экспорт и разбор дерева категорий в формате CSV (RFC 4180).
+ *
+ * Столбцы: name, parent; у корневых категорий parent пустой. Строки записываются обходом
+ * в глубину, поэтому родитель всегда предшествует дочерним категориям, и файл можно
+ * импортировать за один проход. Ни запись, ни разбор не держат файл в памяти.
+ */
+public final class CategoryCsvFormat {
+    private static final String HEADER = "name,parent";
+    private static final char BOM = '\uFEFF';
+
+    private CategoryCsvFormat() {
+    }
+
+    /**
+     * Записывает дерево в поток.
+     *
+     * @param tree Снимок дерева категорий.
+     * @param out  Поток символов (не закрывается).
+     * @throws IOException Если возникает ошибка при записи.
+     */
+    public static void write(CategoryTree tree, Writer out) throws IOException {
+        out.write(HEADER);
+        out.write("\r\n");
+        DepthFirstCursor cursor = tree.depthFirst();
+        while (cursor.advance()) {
+            CategoryTree.Node node = cursor.node();
+            writeField(out, node.name());
+            out.write(',');
+            if (node.parentId() != null) {
+                writeField(out, tree.node(node.parentId()).name());
+            }
+            out.write("\r\n");
+        }
+    }
+
+    /**
+     * Разбирает CSV-файл и передаёт каждую непустую строку потребителю. Строка заголовка пропускается.
+     *
+     * @param file Путь к CSV-файлу в UTF-8.
+     * @param sink Потребитель строк.
+     * @throws IOException Если файл не удаётся прочитать или кавычки не закрыты.
+     */
+    public static void parse(Path file, Consumer<CategoryImportRow> sink) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            parse(reader, sink);
+        }
+    }
+
+    static void parse(Reader reader, Consumer<CategoryImportRow> sink) throws IOException {
+        StringBuilder field = new StringBuilder();
+        String name = null;
+        String parent = null;
+        int column = 0;
+        boolean quoted = false;
+        boolean first = true;
+        int c = reader.read();
+        if (c == BOM) {
+            c = reader.read();
+        }
+        for (; ; c = reader.read()) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Не удалось разобрать CSV-файл: незакрытая кавычка.");
+                }
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"'); // Удвоенная кавычка внутри значения
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                if (column == 0) {
+                    name = field.toString();
+                } else if (column == 1) {
+                    parent = field.toString();
+                }
+                field.setLength(0);
+                column++; // Столбцы после второго игнорируются
+            } else if (c == '\n' || c == '\r' || c == -1) {
+                if (c == '\r') {
+                    reader.mark(1);
+                    if (reader.read() != '\n') {
+                        reader.reset();
+                    }
+                }
+                if (column == 0) {
+                    name = field.toString();
+                } else if (column == 1) {
+                    parent = field.toString();
+                }
+                boolean header = first && "name".equals(name) && "parent".equals(parent);
+                if (!header && !name.isBlank()) {
+                    sink.accept(new CategoryImportRow(name.trim(),
+                            parent == null || parent.isBlank() ? null : parent.trim()));
+                }
+                if (c == -1) {
+                    return;
+                }
+                first = false;
+                field.setLength(0);
+                name = null;
+                parent = null;
+                column = 0;
+            } else {
+                field.append((char) c);
+            }
+        }
+    }
+
+    private static void writeField(Writer out, String value) throws IOException {
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        int run = 0; // Начало ещё не записанного участка без кавычек
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '"') {
+                out.write(value, run, i + 1 - run);
+                out.write('"'); // Кавычка внутри поля удваивается
+                run = i + 1;
+            }
+        }
+        out.write(value, run, value.length() - run);
+        out.write('"');
+    }
+}
@@ -0,0 +1,70 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.tree.CategoryTree;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Потоковый экспорт дерева категорий в Excel.
+ *
+ * Использует SXSSF-книгу со скользящим окном строк: в памяти держится только окно,
+ * остальные строки сбрасываются во временные файлы POI. Ширина столбцов вычисляется
+ * по выборке первых строк вместо autoSizeColumn, который повторно сканирует весь лист.
+ * Благодаря этому потребление памяти не зависит от размера дерева.
+ */
+@Component
+public class CategoryExcelExporter {
+    private static final int ROW_WINDOW = 100;
+    private static final int WIDTH_SAMPLE_ROWS = 1000;
+    private static final int MAX_COLUMN_CHARS = 100;
+
+    /**
+     * Записывает дерево в поток в формате XLSX: столбцы «Category Name» и «Parent Name»,
+     * категории перечисляются обходом в глубину от корней.
+     *
+     * @param tree Снимок дерева категорий.
+     * @param out  Поток, в который записывается книга (не закрывается).
+     * @throws IOException Если возникает ошибка при записи данных.
+     */
+    public void write(CategoryTree tree, OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
+            Sheet sheet = workbook.createSheet("Categories");
+
+            // Создаем заголовки столбцов
+            Row headerRow = sheet.createRow(0);
+            headerRow.createCell(0).setCellValue("Category Name");
+            headerRow.createCell(1).setCellValue("Parent Name");
+
+            int[] rowNum = {1};
+            int[] widths = {"Category Name".length(), "Parent Name".length()};
+            // POI принимает значения ячеек только строками, поэтому в ячейки идут строки названий самого
+            // снимка, без копирования; обход снимка памяти на узел не выделяет.
+            tree.forEachDepthFirst((node, depth) -> {
+                String parentName = node.parentId() != null ? tree.node(node.parentId()).name() : "Root";
+                Row row = sheet.createRow(rowNum[0]++);
+                row.createCell(0).setCellValue(node.name());
+                row.createCell(1).setCellValue(parentName);
+                if (rowNum[0] <= WIDTH_SAMPLE_ROWS) {
+                    widths[0] = Math.max(widths[0], node.name().length());
+                    widths[1] = Math.max(widths[1], parentName.length());
+                }
+            });
+
+            // Ширина в единицах 1/256 символа, с небольшим запасом.
+            sheet.setColumnWidth(0, (Math.min(widths[0], MAX_COLUMN_CHARS) + 2) * 256);
+            sheet.setColumnWidth(1, (Math.min(widths[1], MAX_COLUMN_CHARS) + 2) * 256);
+
+            workbook.write(out);
+        } finally {
+            workbook.close();
+            workbook.dispose(); // Удаляем временные файлы окна строк
+        }
+    }
+}
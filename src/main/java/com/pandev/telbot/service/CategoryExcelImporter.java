@@ -0,0 +1,106 @@
+package com.pandev.telbot.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый разбор Excel-файла с деревом категорий.
+ *
+ * Лист читается событийной моделью XSSF (SAX): строки передаются потребителю по мере разбора,
+ * а книга целиком в память не загружается. Формат совпадает с экспортом:
+ * первая колонка — название категории, вторая — название родителя
+ * (пустое значение или «Root» означает корневую категорию). Строка заголовка пропускается.
+ */
+@Component
+public class CategoryExcelImporter {
+    private static final String HEADER_NAME = "Category Name";
+    private static final String ROOT_MARKER = "Root";
+
+    /**
+     * Разбирает первый лист файла и передаёт каждую непустую строку потребителю.
+     *
+     * @param file Путь к XLSX-файлу.
+     * @param sink Потребитель строк.
+     * @throws IOException Если файл не удаётся прочитать или он повреждён.
+     */
+    public void parse(Path file, Consumer<CategoryImportRow> sink) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        reader.getStylesTable(), strings, new RowHandler(sink), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Не удалось разобрать Excel-файл: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Собирает значения первых двух колонок строки и передаёт их потребителю в конце строки.
+     */
+    private static final class RowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<CategoryImportRow> sink;
+        private String name;
+        private String parentName;
+        private int column;
+
+        private RowHandler(Consumer<CategoryImportRow> sink) {
+            this.sink = sink;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            name = null;
+            parentName = null;
+            column = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            column = cellReference != null ? new CellReference(cellReference).getCol() : column + 1;
+            if (column == 0) {
+                name = formattedValue;
+            } else if (column == 1) {
+                parentName = formattedValue;
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (name == null || name.isBlank()) {
+                return; // Пропускаем пустые строки
+            }
+            if (rowNum == 0 && HEADER_NAME.equals(name)) {
+                return; // Пропускаем заголовок
+            }
+            String parent = parentName == null || parentName.isBlank() || ROOT_MARKER.equals(parentName)
+                    ? null : parentName.trim();
+            sink.accept(new CategoryImportRow(name.trim(), parent));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.tree.CategoryTree;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Экспорт дерева категорий во временный файл в выбранном формате.
+ *
+ * XLSX записывается {@link CategoryExcelExporter}, CSV и JSON — потоковыми
+ * {@link CategoryCsvFormat} и {@link CategoryJsonFormat}, которые не создают промежуточных объектов на строку.
+ */
+@Component
+public class CategoryFileExporter {
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final CategoryExcelExporter excelExporter;
+    private final Path tempDir;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param excelExporter Потоковый экспорт в Excel.
+     * @param tempDir       Каталог для временных файлов экспорта; по умолчанию — системный временный каталог.
+     */
+    public CategoryFileExporter(CategoryExcelExporter excelExporter,
+                                @Value("${telbot.export.temp-dir:${java.io.tmpdir}}") String tempDir) {
+        this.excelExporter = excelExporter;
+        this.tempDir = Paths.get(tempDir);
+    }
+
+    /**
+     * Записывает дерево во временный файл. Ответственность за удаление файла лежит на вызывающем коде.
+     *
+     * @param tree   Снимок дерева категорий.
+     * @param format Формат файла.
+     * @return Путь к созданному файлу.
+     * @throws IOException Если возникает ошибка при записи файла.
+     */
+    public Path exportToFile(CategoryTree tree, TreeFormat format) throws IOException {
+        Path file = Files.createTempFile(tempDir, "categories-", "." + format.extension());
+        try (OutputStream out = Files.newOutputStream(file)) {
+            switch (format) {
+                case XLSX -> excelExporter.write(tree, out);
+                case CSV -> {
+                    BufferedWriter writer = new BufferedWriter(
+                            new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_CHARS);
+                    CategoryCsvFormat.write(tree, writer);
+                    writer.flush();
+                }
+                case JSON -> CategoryJsonFormat.write(tree, out);
+            }
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.pandev.telbot.service;
+
+/**
+ * Строка импортируемого дерева категорий.
+ *
+ * @param name       Название категории.
+ * @param parentName Название родительской категории или null для корневой категории.
+ */
+public record CategoryImportRow(String name, String parentName) {
+}
@@ -0,0 +1,209 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryJdbcRepository;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.CategoryTreeStore;
+import com.pandev.telbot.tree.TreeOp;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Сервис массового импорта дерева категорий.
+ *
+ * Строки файла (XLSX, CSV или JSON) разбираются потоково и накапливаются пакетами заданного размера.
+ * В каждом пакете сначала отбрасываются повторы и строки с неизвестным родителем (родители разрешаются
+ * по названию через карту в памяти: снимок дерева плюс уже импортированные строки), затем одним запросом
+ * резервируются идентификаторы только для оставшихся строк, и пакет вставляется JDBC batch-запросом.
+ * Весь импорт выполняется в одной транзакции.
+ * Категории добавляются в дерево текущего арендатора ({@link TenantContext}).
+ * Тем же путём добавляется структура, вставленная текстом в /addElement ({@link #importOutline(String, String)}).
+ */
+@Service
+public class CategoryImportService {
+    private final CategoryExcelImporter excelImporter;
+    private final CategoryJdbcRepository jdbcRepository;
+    private final CategoryTreeStore treeStore;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final TelbotMetrics metrics;
+
+    /**
+     * Результат импорта.
+     *
+     * @param imported Количество добавленных категорий.
+     * @param skipped  Количество строк, пропущенных из-за неизвестного родителя или повторного названия.
+     */
+    public record ImportResult(int imported, int skipped) {
+    }
+
+    /**
+     * Конструктор сервиса.
+     *
+     * @param excelImporter       Потоковый разбор Excel-файлов.
+     * @param jdbcRepository      JDBC-репозиторий для пакетной вставки.
+     * @param treeStore           Хранилище снимка дерева.
+     * @param transactionTemplate Шаблон транзакции, в которой выполняется весь импорт.
+     * @param batchSize           Размер пакета вставки (свойство telbot.import.batch-size).
+     * @param metrics             Метрики импорта.
+     */
+    public CategoryImportService(CategoryExcelImporter excelImporter, CategoryJdbcRepository jdbcRepository,
+                                 CategoryTreeStore treeStore, TransactionTemplate transactionTemplate,
+                                 @Value("${telbot.import.batch-size:1000}") int batchSize, TelbotMetrics metrics) {
+        this.excelImporter = excelImporter;
+        this.jdbcRepository = jdbcRepository;
+        this.treeStore = treeStore;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = batchSize;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Импортирует категории из файла указанного формата.
+     *
+     * @param file   Путь к файлу.
+     * @param format Формат файла.
+     * @return Результат импорта.
+     * @throws IOException Если файл не удаётся прочитать.
+     */
+    public ImportResult importFile(Path file, TreeFormat format) throws IOException {
+        try {
+            return importRows(format.extension(), consumer -> {
+                try {
+                    switch (format) {
+                        case XLSX -> excelImporter.parse(file, consumer);
+                        case CSV -> CategoryCsvFormat.parse(file, consumer);
+                        case JSON -> CategoryJsonFormat.parse(file, consumer);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Добавляет категории из текста со структурой отступов ({@link CategoryOutlineFormat}) тем же путём,
+     * что и импорт файла: одна транзакция, пакетная вставка, разрешение родителей по карте в памяти.
+     *
+     * @param text       Строки структуры.
+     * @param parentName Название категории, к которой добавляются элементы верхнего уровня, или null для корня.
+     * @return Результат импорта.
+     */
+    public ImportResult importOutline(String text, String parentName) {
+        return importRows("outline", consumer -> CategoryOutlineFormat.parse(text, parentName, consumer));
+    }
+
+    /**
+     * Выполняет импорт строк из источника в одной транзакции и переносит добавленные категории в снимок дерева.
+     *
+     * @param format Название формата для метрик.
+     * @param source Источник, передающий строки потребителю.
+     */
+    private ImportResult importRows(String format, Consumer<Consumer<CategoryImportRow>> source) {
+        BatchWriter writer = new BatchWriter(TenantContext.current(), treeStore.current());
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            source.accept(writer::add);
+            writer.flush();
+            treeStore.updateAfterCommit(new TreeOp.Add(writer.inserted));
+        });
+        metrics.recordImport(format, System.nanoTime() - started, writer.inserted.size(), writer.skipped);
+        return new ImportResult(writer.inserted.size(), writer.skipped);
+    }
+
+    /**
+     * Накапливает строки и записывает их пакетами.
+     */
+    private final class BatchWriter {
+        private final long tenantId;
+        private final CategoryTree tree;
+        private final Map<String, Long> importedIds = new HashMap<>();
+        private final List<CategoryImportRow> pending = new ArrayList<>(batchSize);
+        private final List<CategoryTree.Row> inserted = new ArrayList<>();
+        private int skipped;
+
+        private BatchWriter(long tenantId, CategoryTree tree) {
+            this.tenantId = tenantId;
+            this.tree = tree;
+        }
+
+        private void add(CategoryImportRow row) {
+            pending.add(row);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            // Сначала строки отбираются, и только потом под них резервируются id,
+            // чтобы пропущенные строки не расходовали номера последовательности.
+            List<CategoryImportRow> accepted = new ArrayList<>(pending.size());
+            List<Long> parentIds = new ArrayList<>(pending.size()); // Родитель вне пакета или null
+            int[] parentPositions = new int[pending.size()];         // Позиция родителя в пакете или -1
+            Map<String, Integer> positions = new HashMap<>();
+            for (CategoryImportRow row : pending) {
+                String key = CategoryTree.normalize(row.name());
+                if (positions.containsKey(key) || resolve(row.name()) != null) {
+                    skipped++; // Названия уникальны без учёта регистра
+                    continue;
+                }
+                Long parentId = null;
+                int parentPosition = -1;
+                if (row.parentName() != null) {
+                    Integer position = positions.get(CategoryTree.normalize(row.parentName()));
+                    if (position != null) {
+                        parentPosition = position;
+                    } else {
+                        parentId = resolve(row.parentName());
+                        if (parentId == null) {
+                            skipped++;
+                            continue;
+                        }
+                    }
+                }
+                parentPositions[accepted.size()] = parentPosition;
+                positions.put(key, accepted.size());
+                accepted.add(row);
+                parentIds.add(parentId);
+            }
+            pending.clear();
+            if (accepted.isEmpty()) {
+                return;
+            }
+
+            List<Long> ids = jdbcRepository.allocateIds(accepted.size());
+            List<CategoryTree.Row> batch = new ArrayList<>(accepted.size());
+            for (int i = 0; i < accepted.size(); i++) {
+                long id = ids.get(i);
+                Long parentId = parentPositions[i] >= 0 ? ids.get(parentPositions[i]) : parentIds.get(i);
+                batch.add(new CategoryTree.Row(id, parentId, accepted.get(i).name()));
+                importedIds.put(CategoryTree.normalize(accepted.get(i).name()), id);
+            }
+            jdbcRepository.batchInsert(tenantId, batch, batchSize);
+            inserted.addAll(batch);
+        }
+
+        private Long resolve(String name) {
+            return tree.findByName(name)
+                    .map(CategoryTree.Node::id)
+                    .orElseGet(() -> importedIds.get(CategoryTree.normalize(name)));
+        }
+    }
+}
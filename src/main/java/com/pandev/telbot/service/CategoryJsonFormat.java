@@ -0,0 +1,143 @@
+package com.pandev.telbot.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.DepthFirstCursor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый экспорт и разбор дерева категорий во вложенном JSON.
+ *
+ * Формат — массив корневых узлов, у каждого узла название и массив дочерних:
+ * <pre>[{"name": "Фрукты", "children": [{"name": "Яблоки", "children": []}]}]</pre>
+ * Запись и чтение выполняются потоковыми JsonGenerator и JsonParser (Jackson Streaming API):
+ * в памяти держится только стек названий текущего пути, а не всё дерево.
+ * Поле name должно предшествовать полю children, иначе родитель дочерних узлов неизвестен.
+ */
+public final class CategoryJsonFormat {
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private CategoryJsonFormat() {
+    }
+
+    /**
+     * Записывает дерево в поток в кодировке UTF-8.
+     *
+     * @param tree Снимок дерева категорий.
+     * @param out  Поток байтов (не закрывается).
+     * @throws IOException Если возникает ошибка при записи.
+     */
+    public static void write(CategoryTree tree, OutputStream out) throws IOException {
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.writeStartArray();
+            DepthFirstCursor cursor = tree.depthFirst();
+            int openDepth = -1; // Глубина последнего узла, чей объект ещё открыт
+            while (cursor.advance()) {
+                int depth = cursor.depth();
+                // Закрываем узлы, поддеревья которых закончились
+                for (; openDepth >= depth; openDepth--) {
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                generator.writeStartObject();
+                generator.writeFieldName("name");
+                generator.writeString(cursor.node().name());
+                generator.writeArrayFieldStart("children");
+                openDepth = depth;
+            }
+            for (; openDepth >= 0; openDepth--) {
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Разбирает JSON-файл и передаёт каждый узел потребителю; родитель передаётся раньше дочерних узлов.
+     *
+     * @param file Путь к JSON-файлу.
+     * @param sink Потребитель строк.
+     * @throws IOException Если файл не удаётся прочитать или он не соответствует формату.
+     */
+    public static void parse(Path file, Consumer<CategoryImportRow> sink) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            parse(in, sink);
+        }
+    }
+
+    static void parse(InputStream in, Consumer<CategoryImportRow> sink) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw invalid(parser, "ожидается массив узлов");
+            }
+            Deque<String> path = new ArrayDeque<>(); // Названия узлов от корня до текущего
+            parseNodes(parser, path, sink);
+        }
+    }
+
+    /**
+     * Разбирает массив узлов до закрывающей скобки. Рекурсия не используется: глубина дерева
+     * может достигать десятков тысяч уровней.
+     */
+    private static void parseNodes(JsonParser parser, Deque<String> path, Consumer<CategoryImportRow> sink)
+            throws IOException {
+        Deque<Boolean> named = new ArrayDeque<>(); // Для каждого открытого объекта: встречено ли поле name
+        JsonToken token;
+        while ((token = parser.nextToken()) != null) {
+            switch (token) {
+                case START_OBJECT -> named.push(false);
+                case END_OBJECT -> {
+                    if (!named.pop()) {
+                        throw invalid(parser, "у узла нет поля name");
+                    }
+                    path.pop();
+                }
+                case END_ARRAY -> {
+                    if (named.isEmpty()) {
+                        return; // Закрыт массив корневых узлов
+                    }
+                }
+                case FIELD_NAME -> {
+                    String field = parser.currentName();
+                    JsonToken value = parser.nextToken();
+                    if ("name".equals(field) && value == JsonToken.VALUE_STRING && !named.peek()) {
+                        String name = parser.getText().trim();
+                        if (name.isEmpty()) {
+                            throw invalid(parser, "пустое название");
+                        }
+                        sink.accept(new CategoryImportRow(name, path.peek()));
+                        path.push(name);
+                        named.pop();
+                        named.push(true);
+                    } else if ("children".equals(field) && value == JsonToken.START_ARRAY) {
+                        if (!named.peek()) {
+                            throw invalid(parser, "поле name должно предшествовать children");
+                        }
+                    } else {
+                        parser.skipChildren(); // Неизвестные поля пропускаются
+                    }
+                }
+                default -> throw invalid(parser, "неожиданный элемент " + token);
+            }
+        }
+        throw invalid(parser, "файл обрывается");
+    }
+
+    private static IOException invalid(JsonParser parser, String reason) {
+        return new IOException("Не удалось разобрать JSON-файл: " + reason
+                + " (строка " + parser.currentLocation().getLineNr() + ").");
+    }
+}
@@ -0,0 +1,67 @@
+package com.pandev.telbot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Разбор дерева категорий, вставленного текстом в виде структуры с отступами.
+ *
+ * Каждая непустая строка — одна категория; вложенность задаётся отступом (табуляция — до следующей
+ * позиции, кратной четырём). Маркеры списка «- », «* » и «• » в начале строки отбрасываются, поэтому
+ * вывод /viewTree можно вставить обратно как есть. Название занимает всю строку, кавычки не нужны.
+ * Строки выдаются в порядке следования, поэтому родитель всегда предшествует дочерним категориям.
+ */
+public final class CategoryOutlineFormat {
+    private static final int TAB_WIDTH = 4;
+
+    private CategoryOutlineFormat() {
+    }
+
+    /**
+     * Разбирает текст и передаёт каждую категорию потребителю.
+     *
+     * @param text       Строки структуры.
+     * @param parentName Название категории, к которой добавляются элементы верхнего уровня, или null для корня.
+     * @param consumer   Потребитель строк.
+     */
+    public static void parse(String text, String parentName, Consumer<CategoryImportRow> consumer) {
+        List<Integer> indents = new ArrayList<>();
+        List<String> names = new ArrayList<>(); // Цепочка предков текущей строки
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end);
+            start = end + 1;
+
+            int indent = 0;
+            int i = 0;
+            while (i < line.length() && Character.isWhitespace(line.charAt(i))) {
+                indent = line.charAt(i) == '\t' ? (indent / TAB_WIDTH + 1) * TAB_WIDTH : indent + 1;
+                i++;
+            }
+            if (i + 1 < line.length() && isMarker(line.charAt(i)) && Character.isWhitespace(line.charAt(i + 1))) {
+                i += 2;
+            }
+            String name = line.substring(i).strip();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            while (!indents.isEmpty() && indents.get(indents.size() - 1) >= indent) {
+                indents.remove(indents.size() - 1);
+                names.remove(names.size() - 1);
+            }
+            consumer.accept(new CategoryImportRow(name, names.isEmpty() ? parentName : names.get(names.size() - 1)));
+            indents.add(indent);
+            names.add(name);
+        }
+    }
+
+    private static boolean isMarker(char c) {
+        return c == '-' || c == '*' || c == '•';
+    }
+}
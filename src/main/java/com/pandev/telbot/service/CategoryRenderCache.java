@@ -0,0 +1,228 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.TreePager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Кэш отрисованных представлений дерева, привязанный к арендатору и версии снимка.
+ *
+ * Между операциями записи текст страниц /viewTree и файлы /download не меняются, поэтому:
+ *  - страницы хранятся в общей LRU-карте, ограниченной суммарной длиной текста (telbot.render-cache.max-chars);
+ *  - последний файл каждого формата (XLSX, CSV, JSON) каждого арендатора хранится на диске (не больше
+ *    telbot.render-cache.max-file-bytes) вместе с file_id, который Telegram вернул после первой отправки, —
+ *    повторная отправка не требует ни генерации, ни загрузки файла. Количество файлов ограничено
+ *    telbot.render-cache.max-files, давно не запрашивавшиеся файлы вытесняются.
+ * Ключом служат арендатор ({@link TenantContext}) и {@link CategoryTree#version()}: любое добавление, удаление,
+ * перенос или импорт создаёт снимок с новой версией. Страницы старых версий вытесняются LRU,
+ * файл старой версии заменяется при следующем обращении.
+ */
+@Component
+public class CategoryRenderCache {
+    private static final Logger log = LoggerFactory.getLogger(CategoryRenderCache.class);
+    private final CategoryFileExporter fileExporter;
+    private final long maxTextChars;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final TelbotMetrics metrics;
+
+    private long pagesChars;
+    private final Map<PageKey, TreePager.Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<ExportKey, FileExport> exports = new LinkedHashMap<>(16, 0.75f, true); // Под блокировкой this
+
+    private record PageKey(long tenantId, long version, Long scopeId, long startId, String title, int maxChars) {
+    }
+
+    private record ExportKey(long tenantId, TreeFormat format) {
+    }
+
+    /**
+     * Файл дерева, сгенерированный для определённой версии дерева в одном из форматов.
+     * Выдаётся во временное пользование: после отправки его нужно вернуть через
+     * {@link #release(FileExport, String)}, чтобы вытесненный файл можно было удалить.
+     */
+    public static final class FileExport {
+        private final long version;
+        private final TreeFormat format;
+        private final Path file;
+        private volatile String fileId;
+        private int leases;
+        private boolean retired;
+
+        private FileExport(long version, TreeFormat format, Path file) {
+            this.version = version;
+            this.format = format;
+            this.file = file;
+        }
+
+        /**
+         * @return Формат файла.
+         */
+        public TreeFormat format() {
+            return format;
+        }
+
+        /**
+         * @return Путь к файлу на диске.
+         */
+        public Path file() {
+            return file;
+        }
+
+        /**
+         * @return file_id уже отправленного в Telegram файла или null, если файл ещё не отправлялся.
+         */
+        public String fileId() {
+            return fileId;
+        }
+    }
+
+    /**
+     * Конструктор класса.
+     *
+     * @param fileExporter Экспорт дерева в файл выбранного формата.
+     * @param maxTextChars Максимальная суммарная длина кэшированного текста страниц.
+     * @param maxFileBytes Максимальный размер файла, который сохраняется между запросами.
+     * @param maxFiles     Максимальное количество файлов, сохраняемых между запросами по всем арендаторам.
+     * @param metrics      Метрики генерации файлов.
+     */
+    public CategoryRenderCache(CategoryFileExporter fileExporter,
+                               @Value("${telbot.render-cache.max-chars:2000000}") long maxTextChars,
+                               @Value("${telbot.render-cache.max-file-bytes:104857600}") long maxFileBytes,
+                               @Value("${telbot.render-cache.max-files:64}") int maxFiles,
+                               TelbotMetrics metrics) {
+        this.fileExporter = fileExporter;
+        this.maxTextChars = maxTextChars;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Возвращает страницу дерева текущего арендатора из кэша или строит её через {@link TreePager}.
+     *
+     * @param tree     Снимок дерева текущего арендатора.
+     * @param scopeId  Корень поддерева или null для всего дерева.
+     * @param startId  Узел, с которого начинается страница (-1 — с начала).
+     * @param title    Заголовок первой страницы.
+     * @param maxChars Максимальная длина текста страницы.
+     * @return Страница дерева.
+     */
+    public TreePager.Page page(CategoryTree tree, Long scopeId, long startId, String title, int maxChars) {
+        PageKey key = new PageKey(TenantContext.current(), tree.version(), scopeId, startId, title, maxChars);
+        synchronized (pages) {
+            TreePager.Page cached = pages.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        TreePager.Page page = TreePager.page(tree, scopeId, startId, title, maxChars);
+        synchronized (pages) {
+            if (pages.putIfAbsent(key, page) == null) {
+                pagesChars += page.text().length();
+                var eldest = pages.entrySet().iterator();
+                while (pagesChars > maxTextChars && eldest.hasNext()) {
+                    pagesChars -= eldest.next().getValue().text().length();
+                    eldest.remove();
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Выдаёт файл указанного формата для снимка текущего арендатора, генерируя его только при смене версии дерева.
+     *
+     * @param tree   Снимок дерева текущего арендатора.
+     * @param format Формат файла.
+     * @return Файл экспорта; после использования его нужно вернуть через {@link #release(FileExport, String)}.
+     * @throws IOException Если файл не удаётся сгенерировать.
+     */
+    public FileExport acquire(CategoryTree tree, TreeFormat format) throws IOException {
+        ExportKey key = new ExportKey(TenantContext.current(), format);
+        synchronized (this) {
+            FileExport cached = exports.get(key);
+            if (cached != null && cached.version == tree.version()) {
+                cached.leases++;
+                return cached;
+            }
+        }
+
+        long started = System.nanoTime();
+        FileExport fresh = new FileExport(tree.version(), format, fileExporter.exportToFile(tree, format));
+        metrics.recordExport(format.extension(), System.nanoTime() - started, tree.size());
+        fresh.leases = 1;
+        boolean cacheable = Files.size(fresh.file) <= maxFileBytes;
+        synchronized (this) {
+            FileExport current = exports.get(key);
+            if (current != null && current.version == fresh.version) {
+                // Параллельный запрос уже сгенерировал тот же файл
+                current.leases++;
+                deleteQuietly(fresh.file);
+                return current;
+            }
+            if (!cacheable || (current != null && current.version > fresh.version)) {
+                fresh.retired = true; // Файл используется однократно и удаляется при возврате
+                return fresh;
+            }
+            if (current != null) {
+                retire(current);
+            }
+            exports.put(key, fresh);
+            Iterator<FileExport> eldest = exports.values().iterator();
+            while (exports.size() > maxFiles && eldest.hasNext()) {
+                FileExport evicted = eldest.next();
+                if (evicted != fresh) {
+                    retire(evicted);
+                    eldest.remove();
+                }
+            }
+            return fresh;
+        }
+    }
+
+    /**
+     * Возвращает файл после использования.
+     *
+     * @param export Файл, полученный из {@link #acquire(CategoryTree, TreeFormat)}.
+     * @param fileId file_id, который Telegram присвоил отправленному файлу, или null.
+     */
+    public synchronized void release(FileExport export, String fileId) {
+        if (fileId != null && export.fileId == null) {
+            export.fileId = fileId;
+        }
+        export.leases--;
+        if (export.retired && export.leases == 0) {
+            deleteQuietly(export.file);
+        }
+    }
+
+    private void retire(FileExport export) {
+        export.retired = true;
+        if (export.leases == 0) {
+            deleteQuietly(export.file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete export file {}", file, e);
+        }
+    }
+}
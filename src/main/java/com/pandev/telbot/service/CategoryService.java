@@ -1,49 +1,99 @@
 package com.pandev.telbot.service;
 
 import com.pandev.telbot.model.Category;
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryIdLookup;
 import com.pandev.telbot.repository.CategoryRepository;
 import com.pandev.telbot.telegrambot.CategoryBot;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.CategoryTreeStore;
+import com.pandev.telbot.tree.TreeOp;
+import com.pandev.telbot.tree.TreePager;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.telegram.telegrambots.meta.api.methods.GetFile;
 import org.telegram.telegrambots.meta.api.objects.File;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-import java.io.InputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
  * Сервис для работы с категориями.
  * Предоставляет методы для выполнения CRUD-операций, управления иерархией категорий
  * и генерации отчетов в формате Excel. Также включает интеграцию с Telegram Bot API.
+ * Все операции выполняются над деревом текущего арендатора (чата, см. {@link TenantContext}).
  */
 @Service
 public class CategoryService {
     private final CategoryRepository categoryRepository;
+    private final CategoryIdLookup idLookup; // LRU-кэш название → id перед репозиторием
+    private final CategoryTreeStore treeStore; // Снимок дерева для операций чтения
+    private final CategoryImportService importService;
+    private final CategoryRenderCache renderCache; // Страницы и XLSX-файл текущей версии дерева
+    private final TelegramFileDownloader fileDownloader;
     private CategoryBot categoryBot; // Интеграция с Telegram Bot
 
+    /**
+     * Результат переноса категории.
+     */
+    public enum MoveResult {
+        /** Категория перенесена. */
+        MOVED,
+        /** Переносимая категория не найдена. */
+        NOT_FOUND,
+        /** Новый родитель не найден. */
+        PARENT_NOT_FOUND,
+        /** Новый родитель лежит в поддереве переносимой категории. */
+        CYCLE
+    }
+
     /**
      * Конструктор сервиса.
      *
      * @param categoryRepository Репозиторий для работы с сущностью Category.
+     * @param idLookup           Разрешение названий в идентификаторы через LRU-кэш.
+     * @param treeStore          Хранилище снимка дерева категорий.
+     * @param importService      Массовый импорт категорий.
+     * @param renderCache        Кэш отрисованных страниц и XLSX-файла.
+     * @param fileDownloader     Скачивание присланных пользователями файлов.
      */
-    public CategoryService(CategoryRepository categoryRepository) {
+    public CategoryService(CategoryRepository categoryRepository, CategoryIdLookup idLookup,
+                           CategoryTreeStore treeStore, CategoryImportService importService,
+                           CategoryRenderCache renderCache, TelegramFileDownloader fileDownloader) {
         this.categoryRepository = categoryRepository;
+        this.idLookup = idLookup;
+        this.treeStore = treeStore;
+        this.importService = importService;
+        this.renderCache = renderCache;
+        this.fileDownloader = fileDownloader;
+    }
+
+    /**
+     * Возвращает текущий снимок дерева категорий.
+     *
+     * @return Неизменяемый снимок дерева.
+     */
+    public CategoryTree getTree() {
+        return treeStore.current();
     }
 
     /**
-     * Возвращает список всех категорий с их дочерними элементами.
+     * Возвращает страницу дерева для постраничного просмотра; страницы кэшируются до следующего изменения дерева.
      *
-     * @return Список всех категорий.
+     * @param tree     Снимок дерева, полученный из {@link #getTree()}.
+     * @param scopeId  Корень поддерева или null для всего дерева.
+     * @param startId  Узел, с которого начинается страница (-1 — с начала).
+     * @param title    Заголовок первой страницы.
+     * @param maxChars Максимальная длина текста страницы.
+     * @return Страница дерева.
      */
-    public List<Category> viewTree() {
-        return categoryRepository.findAll();
+    public TreePager.Page page(CategoryTree tree, Long scopeId, long startId, String title, int maxChars) {
+        return renderCache.page(tree, scopeId, startId, title, maxChars);
     }
 
     /**
@@ -51,9 +101,21 @@ public class CategoryService {
      *
      * @param name Название новой категории.
      */
+    @Transactional
     public void addCategory(String name) {
-        Category category = new Category(name);
-        categoryRepository.save(category);
+        Category category = categoryRepository.save(new Category(TenantContext.current(), name));
+        idLookup.put(name, category.getId());
+        treeStore.updateAfterCommit(TreeOp.add(category.getId(), name, null));
+    }
+
+    /**
+     * Проверяет, существует ли категория с указанным названием (без учёта регистра).
+     *
+     * @param name Название категории.
+     * @return true, если категория существует.
+     */
+    public boolean nameExists(String name) {
+        return idLookup.findIdByName(name).isPresent();
     }
 
     /**
@@ -63,93 +125,204 @@ public class CategoryService {
      * @param childName  Название дочерней категории.
      * @return true, если добавление успешно; false, если родительская категория не найдена.
      */
+    @Transactional
     public boolean addChild(String parentName, String childName) {
-        Optional<Category> parent = categoryRepository.findByName(parentName);
-        if (parent.isPresent()) {
-            Category child = new Category(childName);
-            child.setParent(parent.get());
-            categoryRepository.save(child);
+        Optional<Long> parentId = idLookup.findIdByName(parentName);
+        if (parentId.isPresent()) {
+            Category child = new Category(TenantContext.current(), childName);
+            child.setParent(categoryRepository.getReferenceById(parentId.get())); // Без SELECT родителя
+            Category saved = categoryRepository.save(child);
+            idLookup.put(childName, saved.getId());
+            treeStore.updateAfterCommit(TreeOp.add(saved.getId(), childName, parentId.get()));
             return true;
         }
         return false;
     }
 
     /**
-     * Удаляет категорию по её названию.
+     * Удаляет категорию по её названию вместе со всеми потомками одним SQL-оператором.
      *
      * @param name Название категории для удаления.
      * @return true, если категория успешно удалена; false, если категория не найдена.
      */
+    @Transactional
     public boolean removeCategory(String name) {
-        Optional<Category> category = categoryRepository.findByName(name);
-        if (category.isPresent()) {
-            categoryRepository.delete(category.get());
-            return true;
+        Optional<Long> found = idLookup.findIdByName(name);
+        if (found.isEmpty()) {
+            return false;
         }
-        return false;
+        long id = found.get();
+        int deleted = categoryRepository.deleteSubtree(id); // Один DELETE по диапазону материализованного пути
+        idLookup.invalidateAll(); // Вместе с категорией удаляются потомки с неизвестными здесь названиями
+        if (deleted == 0) {
+            return false; // Категория уже удалена в другом месте: кэш содержал устаревший id
+        }
+        treeStore.updateAfterCommit(new TreeOp.Remove(id));
+        return true;
+    }
+
+    /**
+     * Переносит категорию вместе с поддеревом к новому родителю.
+     * Выполняется одним UPDATE строки категории: пути потомков переписывает триггер базы,
+     * сами потомки не загружаются. Перенос внутрь собственного поддерева отклоняется.
+     *
+     * @param name          Название переносимой категории.
+     * @param newParentName Название нового родителя или null, чтобы сделать категорию корневой.
+     * @return Результат переноса.
+     */
+    @Transactional
+    public MoveResult moveCategory(String name, String newParentName) {
+        Optional<Long> found = idLookup.findIdByName(name);
+        if (found.isEmpty()) {
+            return MoveResult.NOT_FOUND;
+        }
+        long id = found.get();
+        Long parentId = null;
+        if (newParentName != null) {
+            Optional<Long> parent = idLookup.findIdByName(newParentName);
+            if (parent.isEmpty()) {
+                return MoveResult.PARENT_NOT_FOUND;
+            }
+            parentId = parent.get();
+        }
+
+        int updated = parentId == null
+                ? categoryRepository.moveToRoot(id)
+                : categoryRepository.moveUnder(id, parentId); // Условие запроса исключает цикл
+        if (updated == 0) {
+            if (!categoryRepository.existsById(id)) {
+                idLookup.invalidate(name);
+                return MoveResult.NOT_FOUND;
+            }
+            return MoveResult.CYCLE;
+        }
+        Long newParentId = parentId;
+        treeStore.updateAfterCommit(new TreeOp.Move(id, newParentId));
+        return MoveResult.MOVED;
+    }
+
+    /**
+     * Переименовывает категорию одним UPDATE без загрузки сущности.
+     * Проверка уникальности нового названия остаётся за вызывающим кодом (см. {@link #nameExists(String)});
+     * окончательно её гарантирует уникальный индекс lower(name).
+     *
+     * @param oldName Текущее название.
+     * @param newName Новое название.
+     * @return true, если категория переименована; false, если она не найдена.
+     */
+    @Transactional
+    public boolean renameCategory(String oldName, String newName) {
+        Optional<Long> found = idLookup.findIdByName(oldName);
+        if (found.isEmpty()) {
+            return false;
+        }
+        long id = found.get();
+        if (categoryRepository.rename(id, newName) == 0) {
+            idLookup.invalidate(oldName); // Кэш содержал id уже удалённой категории
+            return false;
+        }
+        idLookup.invalidate(oldName); // До фиксации старое название остаётся в базе, а с ним и в кэше
+        idLookup.put(newName, id);
+        treeStore.updateAfterCommit(new TreeOp.Rename(id, newName));
+        return true;
     }
 
     /**
      * Находит категорию по её названию. Если категория не найдена, выбрасывается исключение.
+     * Категория строится из снимка дерева вместе с поддеревом и цепочкой родителей
+     * и не связана с контекстом персистентности.
      *
      * @param name Название категории.
      * @return Найденная категория.
      */
-    @Transactional
     public Category findCategoryByName(String name) {
-        return categoryRepository.findByName(name)
+        CategoryTree tree = treeStore.current();
+        CategoryTree.Node found = tree.findByName(name)
                 .orElseThrow(() -> new RuntimeException("Category not found"));
+
+        List<Category> subtree = new ArrayList<>();
+        detachSubtree(tree, found.id(), subtree);
+
+        Category result = subtree.get(0);
+        Category current = result;
+        for (Long parentId = found.parentId(); parentId != null; ) {
+            CategoryTree.Node parentNode = tree.node(parentId);
+            Category parent = new Category(parentNode.name());
+            parent.setId(parentNode.id());
+            parent.getChildren().add(current);
+            current.setParent(parent);
+            current = parent;
+            parentId = parentNode.parentId();
+        }
+        return result;
     }
 
     /**
-     * Генерирует Excel-файл с иерархией категорий.
+     * Строит отсоединённые от JPA объекты Category для поддерева снимка.
      *
-     * @return Байтовый массив с данными Excel-файла.
-     * @throws IOException Если возникает ошибка при записи данных в файл.
+     * @param tree      Снимок дерева.
+     * @param rootId    Идентификатор корня поддерева.
+     * @param collector Список, в который категории добавляются в порядке обхода (корень первым).
      */
-    public byte[] generateCategoryTreeExcel() throws IOException {
-        List<Category> categories = categoryRepository.findAll();
-
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-            Sheet sheet = workbook.createSheet("Categories");
-
-            // Создаем заголовки столбцов
-            Row headerRow = sheet.createRow(0);
-            headerRow.createCell(0).setCellValue("Category Name");
-            headerRow.createCell(1).setCellValue("Parent Name");
-
-            // Заполняем данные о категориях
-            int rowNum = 1;
-            for (Category category : categories) {
-                rowNum = addCategoryToSheet(sheet, category, rowNum, null);
+    private void detachSubtree(CategoryTree tree, long rootId, List<Category> collector) {
+        Map<Long, Category> detached = new HashMap<>();
+        tree.forEachDepthFirst(rootId, (node, depth) -> {
+            Category category = new Category(node.name());
+            category.setId(node.id());
+            if (depth > 0) {
+                Category parent = detached.get(node.parentId());
+                category.setParent(parent);
+                parent.getChildren().add(category);
             }
+            detached.put(node.id(), category);
+            collector.add(category);
+        });
+    }
 
-            sheet.autoSizeColumn(0);
-            sheet.autoSizeColumn(1);
+    /**
+     * Выдаёт файл текущей версии дерева в указанном формате из кэша, генерируя его только после изменений.
+     * Файл принадлежит кэшу: вызывающий код не удаляет его, а возвращает через
+     * {@link #releaseExport(CategoryRenderCache.FileExport, String)}.
+     *
+     * @param format Формат файла.
+     * @return Файл экспорта и, если он уже отправлялся, его file_id в Telegram.
+     * @throws IOException Если файл не удаётся сгенерировать.
+     */
+    public CategoryRenderCache.FileExport acquireExport(TreeFormat format) throws IOException {
+        return renderCache.acquire(treeStore.current(), format);
+    }
 
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
-        }
+    /**
+     * Возвращает файл, полученный из {@link #acquireExport(TreeFormat)}.
+     *
+     * @param export Файл экспорта.
+     * @param fileId file_id, присвоенный Telegram при отправке, или null.
+     */
+    public void releaseExport(CategoryRenderCache.FileExport export, String fileId) {
+        renderCache.release(export, fileId);
     }
 
     /**
-     * Рекурсивно добавляет категорию и её дочерние элементы в Excel-лист.
+     * Импортирует категории из файла XLSX, CSV или JSON потоковым разбором и пакетной вставкой в одной транзакции.
      *
-     * @param sheet       Лист Excel-документа.
-     * @param category    Категория для добавления.
-     * @param rowNum      Номер текущей строки.
-     * @param parentName  Название родительской категории.
-     * @return Следующий номер строки.
+     * @param file   Путь к файлу.
+     * @param format Формат файла.
+     * @return Количество добавленных и пропущенных строк.
+     * @throws IOException Если файл не удаётся прочитать.
      */
-    private int addCategoryToSheet(Sheet sheet, Category category, int rowNum, String parentName) {
-        Row row = sheet.createRow(rowNum++);
-        row.createCell(0).setCellValue(category.getName());
-        row.createCell(1).setCellValue(parentName != null ? parentName : "Root");
+    public CategoryImportService.ImportResult importFile(Path file, TreeFormat format) throws IOException {
+        return importService.importFile(file, format);
+    }
 
-        for (Category child : category.getChildren()) {
-            rowNum = addCategoryToSheet(sheet, child, rowNum, category.getName());
-        }
-        return rowNum;
+    /**
+     * Добавляет структуру категорий, вставленную текстом с отступами, одной транзакцией с пакетной вставкой.
+     *
+     * @param text       Строки структуры.
+     * @param parentName Название категории, к которой добавляются элементы верхнего уровня, или null для корня.
+     * @return Количество добавленных и пропущенных строк.
+     */
+    public CategoryImportService.ImportResult addOutline(String text, String parentName) {
+        return importService.importOutline(text, parentName);
     }
 
     /**
@@ -158,14 +331,18 @@ public class CategoryService {
      * @param categoryName Название новой категории.
      * @param parentCategory Название родительской категории.
      */
+    @Transactional
     public void saveCategory(String categoryName, String parentCategory) {
-        Category category = new Category();
-        category.setName(categoryName);
+        Category category = new Category(TenantContext.current(), categoryName);
+        Long parentId = null;
         if (parentCategory != null) {
-            Optional<Category> parent = categoryRepository.findByName(parentCategory);
-            category.setParent(parent.get());
+            parentId = idLookup.findIdByName(parentCategory).orElseThrow();
+            category.setParent(categoryRepository.getReferenceById(parentId));
         }
-        categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        idLookup.put(categoryName, saved.getId());
+        Long savedParentId = parentId;
+        treeStore.updateAfterCommit(TreeOp.add(saved.getId(), categoryName, savedParentId));
     }
 
     /**
@@ -178,20 +355,18 @@ public class CategoryService {
     }
 
     /**
-     * Скачивает файл из Telegram по указанному fileId.
+     * Скачивает файл из Telegram по указанному fileId во временный файл.
      *
      * @param fileId Уникальный идентификатор файла в Telegram.
-     * @return Поток данных файла.
+     * @return Путь к временному файлу; удалять его должен вызывающий код.
      * @throws TelegramApiException Если возникает ошибка при работе с Telegram API.
-     * @throws IOException Если возникает ошибка при скачивании файла.
+     * @throws IOException Если файл слишком большой или возникает ошибка при скачивании.
      */
-    public InputStream downloadFile(String fileId) throws TelegramApiException, IOException {
+    public Path downloadFile(String fileId) throws TelegramApiException, IOException {
         GetFile getFile = new GetFile();
         getFile.setFileId(fileId);
         File file = categoryBot.execute(getFile);
 
-        String fileUrl = "https://api.telegram.org/file/bot" + categoryBot.getBotToken() + "/" + file.getFilePath();
-        HttpURLConnection connection = (HttpURLConnection) new URL(fileUrl).openConnection();
-        return connection.getInputStream();
+        return fileDownloader.download(categoryBot.fileUrl(file.getFilePath()), file.getFileSize());
     }
 }
@@ -0,0 +1,61 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryJdbcRepository;
+import com.pandev.telbot.tree.TreeJournal;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Передаёт общее дерево, созданное до разделения по чатам ({@link TenantContext#DEFAULT_TENANT}),
+ * чату, указанному в свойстве telbot.tenant.legacy-chat-id.
+ *
+ * Выполняется при создании бина. От него зависят и регистрация бота в режиме long polling, и WebhookController,
+ * поэтому обновления начинают приниматься только после передачи и первая же команда из этого чата видит
+ * прежние категории.
+ * Категории передаются, только если у чата ещё нет своих; после передачи повторный запуск ничего не меняет.
+ * Снимки обоих арендаторов в журнале удаляются, деревья будут прочитаны из базы.
+ */
+@Component
+public class LegacyTenantMigration {
+    private static final Logger log = LoggerFactory.getLogger(LegacyTenantMigration.class);
+
+    private final CategoryJdbcRepository jdbcRepository;
+    private final TreeJournal journal;
+    private final Long chatId;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param jdbcRepository JDBC-репозиторий категорий.
+     * @param journal        Журнал снимков деревьев.
+     * @param chatId         Чат, которому передаётся общее дерево (не задан — передача не выполняется).
+     */
+    public LegacyTenantMigration(CategoryJdbcRepository jdbcRepository, TreeJournal journal,
+                                 @Value("${telbot.tenant.legacy-chat-id:#{null}}") Long chatId) {
+        this.jdbcRepository = jdbcRepository;
+        this.journal = journal;
+        this.chatId = chatId;
+    }
+
+    /**
+     * Передаёт категории, если задан чат-получатель.
+     */
+    @PostConstruct
+    public void migrate() {
+        if (chatId == null || chatId == TenantContext.DEFAULT_TENANT) {
+            return;
+        }
+        int moved = jdbcRepository.reassignTenant(TenantContext.DEFAULT_TENANT, chatId);
+        if (moved > 0) {
+            journal.discard(TenantContext.DEFAULT_TENANT);
+            journal.discard(chatId);
+            log.info("Moved {} categories of the shared tree to chat {}", moved, chatId);
+        } else {
+            log.info("Shared tree not moved to chat {}: it is empty or the chat already has categories", chatId);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.pandev.telbot.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Скачивание файлов, присланных пользователями, с серверов Telegram.
+ *
+ * Используется один общий {@link HttpClient}: он держит пул соединений, поэтому повторные загрузки
+ * не открывают новое TLS-соединение. Ограничения:
+ *  - время установки соединения (telbot.download.connect-timeout);
+ *  - время ожидания ответа сервера (telbot.download.read-timeout);
+ *  - общее время загрузки тела (telbot.download.transfer-timeout), проверяется между блоками;
+ *  - максимальный размер файла (telbot.download.max-bytes), проверяется и по file_size из getFile,
+ *    и по фактически полученным байтам.
+ * Тело ответа не накапливается в памяти: оно переносится во временный файл через
+ * {@link FileChannel#transferFrom}, после чего импорт разбирает файл потоково.
+ */
+@Component
+public class TelegramFileDownloader {
+    private static final long CHUNK_BYTES = 1 << 20;
+
+    private final HttpClient httpClient;
+    private final Duration readTimeout;
+    private final Duration transferTimeout;
+    private final long maxBytes;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param connectTimeout  Максимальное время установки соединения.
+     * @param readTimeout     Максимальное время ожидания заголовков ответа.
+     * @param transferTimeout Максимальное время загрузки тела файла.
+     * @param maxBytes        Максимальный размер файла в байтах.
+     */
+    public TelegramFileDownloader(@Value("${telbot.download.connect-timeout:5s}") Duration connectTimeout,
+                                  @Value("${telbot.download.read-timeout:30s}") Duration readTimeout,
+                                  @Value("${telbot.download.transfer-timeout:120s}") Duration transferTimeout,
+                                  @Value("${telbot.download.max-bytes:20971520}") long maxBytes) {
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.readTimeout = readTimeout;
+        this.transferTimeout = transferTimeout;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Скачивает файл во временный файл.
+     *
+     * @param url          Адрес файла.
+     * @param expectedSize Размер файла по данным Telegram или null, если он неизвестен.
+     * @return Путь к временному файлу; удалять его должен вызывающий код.
+     * @throws IOException Если файл слишком большой, сервер ответил ошибкой или истекло время ожидания.
+     */
+    public Path download(String url, Long expectedSize) throws IOException {
+        if (expectedSize != null && expectedSize > maxBytes) {
+            throw new IOException(tooLarge());
+        }
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .GET()
+                .build();
+        HttpResponse<InputStream> response = awaitResponse(request);
+
+        Path file = Files.createTempFile("upload-", ".tmp");
+        try (InputStream body = response.body()) {
+            if (response.statusCode() != 200) {
+                throw new IOException("Сервер Telegram вернул код " + response.statusCode() + " при скачивании файла.");
+            }
+            long declared = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            if (declared > maxBytes) {
+                throw new IOException(tooLarge());
+            }
+            transfer(body, file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+    }
+
+    private HttpResponse<InputStream> awaitResponse(HttpRequest request) throws IOException {
+        try {
+            // sendAsync не занимает поток на время установки соединения; ждём только заголовки
+            return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofInputStream())
+                    .get(readTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Скачивание файла прервано.", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("Истекло время ожидания ответа при скачивании файла.", e);
+        }
+    }
+
+    /**
+     * Переносит тело ответа в файл блоками по {@link #CHUNK_BYTES}, прерываясь при превышении
+     * размера или общего времени загрузки.
+     */
+    private void transfer(InputStream body, Path file) throws IOException {
+        long deadline = System.nanoTime() + transferTimeout.toNanos();
+        try (ReadableByteChannel source = Channels.newChannel(body);
+             FileChannel target = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            while (true) {
+                long transferred = target.transferFrom(source, position, CHUNK_BYTES);
+                if (transferred == 0) {
+                    return; // transferFrom возвращает 0 только в конце потока (источник блокирующий)
+                }
+                position += transferred;
+                if (position > maxBytes) {
+                    throw new IOException(tooLarge());
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IOException("Истекло время скачивания файла.");
+                }
+            }
+        }
+    }
+
+    private String tooLarge() {
+        return "Файл превышает допустимый размер " + maxBytes / (1024 * 1024) + " МБ.";
+    }
+}
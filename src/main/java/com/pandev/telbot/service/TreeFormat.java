@@ -0,0 +1,59 @@
+package com.pandev.telbot.service;
+
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Формат файла с деревом категорий для /download и /upload.
+ */
+public enum TreeFormat {
+    /** Книга Excel (Apache POI); самый дорогой по памяти и процессору формат. */
+    XLSX("xlsx"),
+    /** CSV со столбцами name и parent; пустой parent означает корневую категорию. */
+    CSV("csv"),
+    /** Вложенный JSON: массив узлов {"name": ..., "children": [...]}. */
+    JSON("json");
+
+    private final String extension;
+
+    TreeFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return Расширение файла без точки.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * Определяет формат по названию, например аргументу команды /download csv.
+     *
+     * @param name Название формата без учёта регистра.
+     * @return Формат или пустой Optional, если название неизвестно.
+     */
+    public static Optional<TreeFormat> fromName(String name) {
+        String normalized = name.toLowerCase(Locale.ROOT);
+        for (TreeFormat format : values()) {
+            if (format.extension.equals(normalized)) {
+                return Optional.of(format);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Определяет формат по расширению имени файла.
+     *
+     * @param fileName Имя файла или null.
+     * @return Формат или пустой Optional, если расширение отсутствует или неизвестно.
+     */
+    public static Optional<TreeFormat> fromFileName(String fileName) {
+        if (fileName == null) {
+            return Optional.empty();
+        }
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? Optional.empty() : fromName(fileName.substring(dot + 1));
+    }
+}
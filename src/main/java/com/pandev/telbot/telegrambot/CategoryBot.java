@@ -1,74 +1,119 @@
 package com.pandev.telbot.telegrambot;
 
 import com.pandev.telbot.command.CommandManager;
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.model.TenantContext;
 import com.pandev.telbot.service.CategoryService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
-
-import java.util.Map;
 
 /**
  * Telegram-бот для работы с категориями.
  * Расширяет TelegramLongPollingBot для обработки входящих сообщений и выполнения команд.
+ *
+ * Адрес Bot API задаётся свойством telegram.bot.api-url (по умолчанию https://api.telegram.org/),
+ * что позволяет запускать бота против локальной заглушки для нагрузочного тестирования.
  */
 @Component
 public class CategoryBot extends TelegramLongPollingBot {
 
     private final CommandManager commandManager; // Управляет выполнением команд.
+    private final UpdateDispatcher dispatcher; // Выполняет команды вне потока long polling.
+    private final OutboundQueue outboundQueue; // Отправляет ответы с учётом лимитов Telegram.
+    private final String apiUrl; // Адрес Bot API с завершающим '/'.
 
     /**
      * Конструктор класса. Устанавливает связь с CategoryService и инициализирует CommandManager.
      *
      * @param categoryService Сервис для работы с категориями.
+     * @param dispatcher      Диспетчер, выполняющий обновления параллельно по чатам.
+     * @param outboundQueue   Очередь исходящих запросов.
+     * @param metrics         Метрики выполнения команд.
+     * @param apiUrl          Адрес Bot API.
      */
-    public CategoryBot(CategoryService categoryService) {
+    public CategoryBot(CategoryService categoryService, UpdateDispatcher dispatcher, OutboundQueue outboundQueue,
+                       TelbotMetrics metrics,
+                       @Value("${telegram.bot.api-url:https://api.telegram.org/}") String apiUrl) {
+        super(botOptions(apiUrl));
+        this.apiUrl = withTrailingSlash(apiUrl);
+        this.dispatcher = dispatcher;
+        this.outboundQueue = outboundQueue;
+        outboundQueue.setSender(this); // Очередь отправляет запросы от имени этого бота.
         categoryService.setCategoryBot(this); // Передаем бота в CategoryService для интеграции.
-        this.commandManager = new CommandManager(categoryService); // Инициализируем менеджер команд.
+        this.commandManager = new CommandManager(categoryService, outboundQueue, metrics); // Инициализируем менеджер команд.
+    }
+
+    private static DefaultBotOptions botOptions(String apiUrl) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setBaseUrl(withTrailingSlash(apiUrl) + "bot"); // Библиотека дописывает токен и имя метода
+        return options;
+    }
+
+    private static String withTrailingSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+
+    /**
+     * Возвращает адрес для скачивания файла, полученного методом getFile.
+     *
+     * @param filePath Значение file_path из ответа getFile.
+     * @return Полный URL файла на сервере Bot API.
+     */
+    public String fileUrl(String filePath) {
+        return apiUrl + "file/bot" + getBotToken() + "/" + filePath;
     }
 
     /**
      * Метод, вызываемый при получении обновления (сообщения или команды) в Telegram.
+     * Обновление передаётся диспетчеру и обрабатывается в рабочем потоке; при переполнении
+     * очереди пользователь сразу получает ответ с просьбой повторить позже.
      *
      * @param update Объект Update, содержащий данные о новом событии (например, сообщение от пользователя).
      */
     @Override
     public void onUpdateReceived(Update update) {
-        // Проверяем, есть ли текстовое сообщение.
-        if (update.hasMessage() && update.getMessage().hasText()) {
-            String message = update.getMessage().getText(); // Получаем текст сообщения.
-            String[] parts = message.split(" ", 2); // Разделяем на команду и аргументы.
-            String commandName = parts[0]; // Имя команды.
-            String[] args = parts.length > 1 ? parts[1].split(" ") : new String[0]; // Аргументы команды.
+        if (!dispatcher.dispatch(update, this::handleUpdate) && update.hasMessage()) {
+            sendMessage(update.getMessage().getChatId(), "Бот сейчас занят, попробуйте позже.");
+        }
+    }
 
-            String response;
-            // Особая обработка команды /download, где передается объект Update.
-            if ("/download".equals(commandName)) {
-                response = commandManager.executeCommand(commandName, update);
-            } else {
-                response = commandManager.executeCommand(commandName, args);
+    /**
+     * Обрабатывает обновление: выполняет команду и отправляет ответ.
+     * Вызывается диспетчером; обновления одного чата обрабатываются последовательно.
+     * Команда выполняется над деревом чата: идентификатор чата становится арендатором {@link TenantContext}.
+     *
+     * @param update Объект Update с сообщением или нажатием inline-кнопки.
+     */
+    void handleUpdate(Update update) {
+        // Нажатия inline-кнопок (например, навигация по страницам дерева).
+        if (update.hasCallbackQuery()) {
+            if (update.getCallbackQuery().getMessage() != null) {
+                Long chatId = update.getCallbackQuery().getMessage().getChatId();
+                TenantContext.run(chatId, () -> commandManager.handleCallback(update));
+            }
+            return;
+        }
+        if (update.hasMessage()) {
+            Long chatId = update.getMessage().getChatId();
+            // Команда берётся из текста сообщения или подписи к документу; способ вызова определяет таблица маршрутов.
+            String response = TenantContext.call(chatId, () -> commandManager.route(update));
+            if (response != null) { // null означает, что команда уже отправила ответ сама.
+                sendMessage(chatId, response); // Отправляем ответ пользователю.
             }
-            sendMessage(update.getMessage().getChatId(), response); // Отправляем ответ пользователю.
         }
     }
 
     /**
-     * Отправляет сообщение в Telegram-чат.
+     * Ставит сообщение в очередь отправки в Telegram-чат и сразу возвращается.
      *
      * @param chatId Идентификатор чата.
      * @param text   Текст сообщения.
      */
     private void sendMessage(Long chatId, String text) {
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId.toString()); // Устанавливаем ID чата.
-        message.setText(text); // Устанавливаем текст сообщения.
-        try {
-            execute(message); // Отправляем сообщение через Telegram API.
-        } catch (TelegramApiException e) {
-            e.printStackTrace(); // Логируем ошибку, если отправка не удалась.
-        }
+        outboundQueue.sendText(chatId, text);
     }
 
     /**
@@ -0,0 +1,423 @@
+package com.pandev.telbot.telegrambot;
+
+import com.pandev.telbot.metrics.TelbotMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Общая очередь исходящих запросов к Telegram Bot API.
+ *
+ * Команды ставят ответы в очередь и сразу возвращаются; отправка выполняется асинхронно (executeAsync).
+ *  - соблюдаются глобальный лимит и лимит на чат (token bucket, свойства telbot.outbound.*);
+ *  - запросы одного чата отправляются по порядку, не более одного одновременно;
+ *  - ответ 429 повторяется после паузы retry_after, указанной Telegram;
+ *  - несколько ожидающих простых текстовых ответов одному чату объединяются в одно сообщение;
+ *  - текст длиннее лимита Telegram (4096 символов) делится на несколько сообщений по границам строк.
+ *
+ * Всё состояние очереди изменяется только в одном служебном потоке, поэтому блокировки не нужны.
+ */
+@Component
+public class OutboundQueue {
+    private static final Logger log = LoggerFactory.getLogger(OutboundQueue.class);
+    private static final int MESSAGE_LIMIT = 4096;
+    private static final String MERGE_SEPARATOR = "\n\n";
+    private static final long NO_CHAT = Long.MIN_VALUE;
+    private static final int MAX_IDLE_BUCKETS = 10_000;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "outbound-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final TokenBucket globalBucket;
+    private final double perChatRate;
+    private final int perChatBurst;
+    private final int maxRetries;
+    private final TelbotMetrics metrics;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Map<Long, Lane> lanes = new HashMap<>();
+
+    /**
+     * Ведра простаивающих чатов: сохраняются, чтобы повторное сообщение сразу после опустошения
+     * очереди не обходило лимит чата.
+     */
+    private final Map<Long, TokenBucket> idleBuckets = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TokenBucket> eldest) {
+            return size() > MAX_IDLE_BUCKETS;
+        }
+    };
+
+    private volatile AbsSender sender;
+
+    /**
+     * Конструктор класса.
+     *
+     * @param globalRate   Допустимое количество запросов в секунду по всем чатам.
+     * @param perChatRate  Допустимое количество запросов в секунду в один чат.
+     * @param perChatBurst Количество запросов, которое можно отправить в чат подряд без паузы.
+     * @param maxRetries   Максимальное количество повторов после ответа 429.
+     * @param metrics      Метрики вызовов Bot API.
+     */
+    public OutboundQueue(@Value("${telbot.outbound.global-rate:30}") double globalRate,
+                         @Value("${telbot.outbound.per-chat-rate:1}") double perChatRate,
+                         @Value("${telbot.outbound.per-chat-burst:3}") int perChatBurst,
+                         @Value("${telbot.outbound.max-retries:5}") int maxRetries,
+                         TelbotMetrics metrics) {
+        this.globalBucket = new TokenBucket(globalRate, Math.max(1, (int) globalRate));
+        this.perChatRate = perChatRate;
+        this.perChatBurst = perChatBurst;
+        this.maxRetries = maxRetries;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Устанавливает отправителя, через которого выполняются запросы.
+     *
+     * @param sender Бот Telegram.
+     */
+    public void setSender(AbsSender sender) {
+        this.sender = sender;
+    }
+
+    /**
+     * @return Количество запросов, ожидающих отправки или отправляемых в данный момент.
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Ставит в очередь текстовый ответ. Ответы, ожидающие отправки в тот же чат, могут быть объединены,
+     * а слишком длинный ответ отправляется несколькими сообщениями подряд.
+     *
+     * @param chatId Идентификатор чата.
+     * @param text   Текст сообщения.
+     * @return Future, завершающийся после отправки всех частей (или окончательной ошибки).
+     */
+    public CompletableFuture<Void> sendText(Long chatId, String text) {
+        List<String> parts = split(text, MESSAGE_LIMIT);
+        CompletableFuture<?>[] sent = new CompletableFuture<?>[parts.size()];
+        for (int i = 0; i < sent.length; i++) {
+            Outgoing outgoing = new Outgoing("SendMessage", null, parts.get(i));
+            enqueue(chatId, outgoing); // Части одного чата уходят в порядке постановки
+            sent[i] = outgoing.future;
+        }
+        return CompletableFuture.allOf(sent);
+    }
+
+    /**
+     * Делит текст на части не длиннее limit, разрезая по последнему переводу строки, который в них помещается.
+     * Строка длиннее limit режется по границе символа, не разделяя суррогатную пару.
+     *
+     * @param text  Текст.
+     * @param limit Максимальная длина части.
+     * @return Части текста по порядку; текст в пределах лимита возвращается целиком.
+     */
+    static List<String> split(String text, int limit) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        while (text.length() - start > limit) {
+            int newline = text.lastIndexOf('\n', start + limit);
+            int end;
+            int next;
+            if (newline > start) {
+                end = newline;
+                next = newline + 1; // Перевод строки на стыке частей не отправляется
+            } else {
+                end = start + limit;
+                if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                    end--;
+                }
+                next = end;
+            }
+            parts.add(text.substring(start, end));
+            start = next;
+        }
+        parts.add(text.substring(start));
+        return parts;
+    }
+
+    /**
+     * Ставит в очередь произвольный метод Bot API (сообщение с клавиатурой, редактирование, ответ на callback).
+     *
+     * @param chatId Идентификатор чата, к лимиту которого относится запрос; null — только глобальный лимит.
+     * @param method Метод Bot API.
+     * @return Future с результатом метода.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends Serializable> CompletableFuture<T> execute(Long chatId, BotApiMethod<T> method) {
+        Outgoing outgoing = new Outgoing(method.getClass().getSimpleName(), bot -> {
+            try {
+                return bot.executeAsync(method);
+            } catch (TelegramApiException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }, null);
+        enqueue(chatId, outgoing);
+        return outgoing.future.thenApply(result -> (T) result);
+    }
+
+    /**
+     * Ставит в очередь отправку документа.
+     *
+     * @param document Запрос отправки документа.
+     * @return Future с отправленным сообщением.
+     */
+    public CompletableFuture<Message> sendDocument(SendDocument document) {
+        Outgoing outgoing = new Outgoing("SendDocument", bot -> bot.executeAsync(document), null);
+        enqueue(Long.valueOf(document.getChatId()), outgoing);
+        return outgoing.future.thenApply(result -> (Message) result);
+    }
+
+    private void enqueue(Long chatId, Outgoing outgoing) {
+        long key = chatId == null ? NO_CHAT : chatId;
+        long enqueuedAt = System.nanoTime();
+        pending.incrementAndGet();
+        outgoing.future.whenComplete((result, error) -> {
+            pending.decrementAndGet();
+            metrics.recordOutboundLatency(System.nanoTime() - enqueuedAt);
+        });
+        scheduler.execute(() -> {
+            Lane lane = lanes.get(key);
+            if (lane == null) {
+                TokenBucket bucket = key == NO_CHAT ? null : idleBuckets.remove(key);
+                lane = new Lane(key, bucket != null ? bucket : new TokenBucket(perChatRate, perChatBurst));
+                lanes.put(key, lane);
+            }
+            lane.queue.add(outgoing);
+            if (!lane.busy) {
+                pump(lane);
+            }
+        });
+    }
+
+    /**
+     * Отправляет следующий запрос чата, если позволяют лимиты; иначе откладывает попытку.
+     * Выполняется только в служебном потоке.
+     */
+    private void pump(Lane lane) {
+        lane.busy = false;
+        if (lane.queue.isEmpty()) {
+            lanes.remove(lane.chatId);
+            if (lane.chatId != NO_CHAT) {
+                idleBuckets.put(lane.chatId, lane.bucket);
+            }
+            return;
+        }
+        long now = System.nanoTime();
+        long wait = Math.max(globalBucket.delayNanos(now), lane.chatId == NO_CHAT ? 0 : lane.bucket.delayNanos(now));
+        lane.busy = true; // До завершения отправки или паузы новые запросы только накапливаются
+        if (wait > 0) {
+            scheduler.schedule(() -> pump(lane), wait, TimeUnit.NANOSECONDS);
+            return;
+        }
+        globalBucket.take();
+        if (lane.chatId != NO_CHAT) {
+            lane.bucket.take();
+        }
+
+        Outgoing head = merge(lane);
+        long started = System.nanoTime();
+        CompletableFuture<?> call;
+        try {
+            call = head.call(lane.chatId).apply(sender);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((result, error) -> {
+            metrics.recordTelegramCall(head.method, System.nanoTime() - started, error == null);
+            scheduler.execute(() -> complete(lane, head, result, error));
+        });
+    }
+
+    private void complete(Lane lane, Outgoing head, Object result, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Integer retryAfter = retryAfter(cause);
+        if (retryAfter != null && head.attempts++ < maxRetries) {
+            scheduler.schedule(() -> pump(lane), retryAfter, TimeUnit.SECONDS);
+            return;
+        }
+        lane.queue.poll();
+        if (cause != null) {
+            // Ошибка отправки не должна останавливать очередь чата; в метриках она учтена в telbot.telegram.api
+            log.warn("{} to chat {} failed", head.method, lane.chatId, cause);
+            head.completeExceptionally(cause);
+        } else {
+            head.complete(result);
+        }
+        pump(lane);
+    }
+
+    /**
+     * Объединяет подряд идущие текстовые ответы в начале очереди, пока текст укладывается в лимит Telegram.
+     */
+    private static Outgoing merge(Lane lane) {
+        Outgoing head = lane.queue.peek();
+        if (head.text == null || lane.queue.size() < 2) {
+            return head;
+        }
+        List<Outgoing> merged = new ArrayList<>();
+        StringBuilder text = new StringBuilder(head.text);
+        for (Outgoing next : lane.queue) {
+            if (next == head) {
+                continue;
+            }
+            if (next.text == null || text.length() + MERGE_SEPARATOR.length() + next.text.length() > MESSAGE_LIMIT) {
+                break;
+            }
+            text.append(MERGE_SEPARATOR).append(next.text);
+            merged.add(next);
+        }
+        if (merged.isEmpty()) {
+            return head;
+        }
+        lane.queue.removeAll(merged); // Сравнение по ссылке: Outgoing не переопределяет equals
+        lane.queue.poll();
+        Outgoing combined = new Outgoing(head.method, null, text.toString());
+        combined.future.whenComplete((result, error) -> {
+            for (Outgoing part : merged) {
+                part.completeWith(result, error);
+            }
+            head.completeWith(result, error);
+        });
+        lane.queue.addFirst(combined);
+        return combined;
+    }
+
+    private static Integer retryAfter(Throwable error) {
+        if (error instanceof TelegramApiRequestException requestError
+                && Integer.valueOf(429).equals(requestError.getErrorCode())
+                && requestError.getParameters() != null) {
+            return requestError.getParameters().getRetryAfter();
+        }
+        return null;
+    }
+
+    /**
+     * Останавливает служебный поток, давая завершиться запланированным отправкам.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Очередь запросов одного чата и его ведро токенов.
+     */
+    private static final class Lane {
+        private final long chatId;
+        private final TokenBucket bucket;
+        private final ArrayDeque<Outgoing> queue = new ArrayDeque<>();
+        private boolean busy;
+
+        private Lane(long chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Запрос в очереди: либо готовый вызов Bot API, либо простой текст, который можно объединить с соседним.
+     */
+    private static final class Outgoing {
+        private final String method;
+        private final Function<AbsSender, CompletableFuture<?>> call;
+        private final String text;
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Outgoing(String method, Function<AbsSender, CompletableFuture<?>> call, String text) {
+            this.method = method;
+            this.call = call;
+            this.text = text;
+        }
+
+        private Function<AbsSender, CompletableFuture<?>> call(long chatId) {
+            if (call != null) {
+                return call;
+            }
+            SendMessage message = new SendMessage(String.valueOf(chatId), text);
+            return bot -> {
+                try {
+                    return bot.executeAsync(message);
+                } catch (TelegramApiException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            };
+        }
+
+        private void complete(Object result) {
+            future.complete(result);
+        }
+
+        private void completeExceptionally(Throwable error) {
+            future.completeExceptionally(error);
+        }
+
+        private void completeWith(Object result, Throwable error) {
+            if (error != null) {
+                completeExceptionally(error);
+            } else {
+                complete(result);
+            }
+        }
+    }
+
+    /**
+     * Ведро токенов: пополняется с постоянной скоростью до ёмкости, каждый запрос расходует один токен.
+     */
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(double perSecond, int capacity) {
+            this.tokensPerNano = perSecond / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = capacity;
+            this.tokens = capacity;
+        }
+
+        /**
+         * @return Время в наносекундах до появления токена (0, если токен уже доступен).
+         */
+        private long delayNanos(long now) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        private void take() {
+            tokens -= 1;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.pandev.telbot.telegrambot;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Диспетчер входящих обновлений Telegram.
+ *
+ * Обработка выносится из потока long polling в пул рабочих потоков:
+ *  - обновления одного чата выполняются строго по очереди (очередь чата);
+ *  - разные чаты обрабатываются параллельно;
+ *  - общее количество ожидающих обновлений и длина очереди одного чата ограничены,
+ *    при переполнении обновление отклоняется, и пользователь получает ответ «занят».
+ *
+ * Проект собирается под Java 17, поэтому вместо виртуальных потоков используется
+ * пул платформенных потоков размера telbot.dispatcher.threads; при переходе на Java 21
+ * достаточно заменить фабрику пула на Executors.newVirtualThreadPerTaskExecutor().
+ */
+@Component
+public class UpdateDispatcher {
+    private static final Logger log = LoggerFactory.getLogger(UpdateDispatcher.class);
+    private static final long RETRY_PAUSE_MS = 10;
+
+    private final ExecutorService executor;
+    private final int capacity;
+    private final int perChatCapacity;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final ConcurrentHashMap<Long, Queue<Runnable>> lanes = new ConcurrentHashMap<>();
+    private final AtomicLong threadCounter = new AtomicLong();
+
+    /**
+     * Конструктор класса.
+     *
+     * @param threads         Количество рабочих потоков (0 — по числу ядер, умноженному на 2).
+     * @param capacity        Максимальное количество ожидающих обновлений по всем чатам.
+     * @param perChatCapacity Максимальное количество ожидающих обновлений одного чата.
+     */
+    public UpdateDispatcher(@Value("${telbot.dispatcher.threads:0}") int threads,
+                            @Value("${telbot.dispatcher.queue-capacity:1000}") int capacity,
+                            @Value("${telbot.dispatcher.per-chat-capacity:20}") int perChatCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        this.executor = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "update-worker-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.capacity = capacity;
+        this.perChatCapacity = perChatCapacity;
+    }
+
+    /**
+     * Ставит обновление в очередь его чата.
+     *
+     * @param update  Входящее обновление.
+     * @param handler Обработчик, который будет вызван в рабочем потоке.
+     * @return true, если обновление принято; false, если очередь переполнена.
+     */
+    public boolean dispatch(Update update, Consumer<Update> handler) {
+        Long chatId = chatIdOf(update);
+        if (pending.incrementAndGet() > capacity) {
+            pending.decrementAndGet();
+            return false;
+        }
+        Runnable task = () -> {
+            try {
+                handler.accept(update);
+            } catch (RuntimeException e) {
+                // Ошибка одной команды не должна останавливать очередь чата
+                log.error("Update {} failed", update.getUpdateId(), e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        };
+        if (chatId == null) {
+            executor.execute(task);
+            return true;
+        }
+
+        boolean[] accepted = {true};
+        boolean[] schedule = {false};
+        lanes.compute(chatId, (id, lane) -> {
+            if (lane == null) {
+                lane = new ArrayDeque<>();
+                schedule[0] = true; // Очередь только что создана: для неё ещё нет рабочей задачи
+            } else if (lane.size() >= perChatCapacity) {
+                accepted[0] = false;
+                return lane;
+            }
+            lane.add(task);
+            return lane;
+        });
+        if (!accepted[0]) {
+            pending.decrementAndGet();
+            return false;
+        }
+        if (schedule[0]) {
+            executor.execute(() -> drain(chatId));
+        }
+        return true;
+    }
+
+    /**
+     * Ставит обновление в очередь, ожидая освобождения места не дольше указанного времени.
+     *
+     * @param update  Входящее обновление.
+     * @param handler Обработчик, который будет вызван в рабочем потоке.
+     * @param timeout Максимальное время ожидания места в очереди.
+     * @return true, если обновление принято; false, если место не освободилось за отведённое время.
+     */
+    public boolean dispatch(Update update, Consumer<Update> handler, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!dispatch(update, handler)) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            try {
+                Thread.sleep(RETRY_PAUSE_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Количество обновлений, ожидающих или выполняющихся в данный момент.
+     */
+    public int pendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Последовательно выполняет задачи очереди чата. Очередь удаляется из карты в тот момент,
+     * когда в ней не осталось задач; следующее обновление чата создаст новую очередь и новую рабочую задачу.
+     * Задача остаётся в очереди, пока выполняется, поэтому параллельный dispatch не запустит вторую.
+     * Исключения команд перехватывает сама задача; если же вылетел Error, оставшиеся задачи очереди
+     * передаются новой рабочей задаче.
+     */
+    private void drain(Long chatId) {
+        Runnable[] next = {null};
+        lanes.computeIfPresent(chatId, (id, lane) -> {
+            next[0] = lane.peek();
+            return lane;
+        });
+        while (next[0] != null) {
+            boolean completed = false;
+            try {
+                next[0].run();
+                completed = true;
+            } finally {
+                // Очередь продвигается и тогда, когда задача бросила Error: иначе чат остался бы
+                // с непустой очередью без рабочей задачи и больше не обрабатывался бы.
+                next[0] = null;
+                // Очередь чата меняется только внутри compute*, то есть под блокировкой ключа карты.
+                lanes.computeIfPresent(chatId, (id, lane) -> {
+                    lane.poll();
+                    next[0] = lane.peek();
+                    return lane.isEmpty() ? null : lane;
+                });
+                if (!completed && next[0] != null) {
+                    executor.execute(() -> drain(chatId)); // Этот поток завершится с ошибкой
+                }
+            }
+        }
+    }
+
+    private static Long chatIdOf(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        return null;
+    }
+
+    /**
+     * Останавливает пул, давая выполняющимся командам завершиться.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.pandev.telbot.telegrambot;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pandev.telbot.service.LegacyTenantMigration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * HTTP-endpoint для режима webhook (telegram.bot.mode=webhook), альтернатива long polling.
+ *
+ * Telegram присылает обновления POST-запросами; они передаются тому же диспетчеру и CommandManager,
+ * что и в режиме long polling. Ответ отправляется сразу после постановки обновлений в очередь.
+ * Контроллер создаётся только после передачи общего дерева чату ({@link LegacyTenantMigration}), поэтому
+ * endpoint не принимает обновлений раньше, как и бот в режиме long polling.
+ * Бот рассчитан на один экземпляр: снимки деревьев, кеши отрисовки и журнал живут в памяти процесса
+ * и не согласуются между экземплярами, поэтому запускать несколько копий за балансировщиком нельзя.
+ *
+ * Особенности:
+ *  - тело запроса может содержать одно обновление или JSON-массив обновлений,
+ *    которые подтверждаются одним ответом (пакетное подтверждение);
+ *  - если очередь не освободилась за telegram.bot.webhook.enqueue-timeout, возвращается 503,
+ *    и Telegram повторит доставку позже;
+ *  - принятые update_id запоминаются (последние {@value #RECENT_UPDATES}), поэтому при повторной доставке
+ *    пакета, часть которого уже была принята до 503, повторно выполняются только отклонённые обновления;
+ *  - при заданном telegram.bot.webhook.secret-token проверяется заголовок X-Telegram-Bot-Api-Secret-Token.
+ */
+@RestController
+@ConditionalOnProperty(name = "telegram.bot.mode", havingValue = "webhook")
+public class WebhookController {
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    static final int RECENT_UPDATES = 10_000;
+
+    private final CategoryBot categoryBot;
+    private final UpdateDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+    private final String publicUrl;
+    private final String secretToken;
+    private final Duration enqueueTimeout;
+    private final Set<Integer> recentUpdates = Collections.newSetFromMap(new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Boolean> eldest) {
+            return size() > RECENT_UPDATES;
+        }
+    });
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryBot           Бот, обрабатывающий обновления и отправляющий ответы.
+     * @param dispatcher            Диспетчер обновлений.
+     * @param objectMapper          Преобразователь JSON.
+     * @param legacyTenantMigration Передача общего дерева чату; завершается до создания контроллера.
+     * @param publicUrl             Публичный URL endpoint, регистрируемый в Telegram (пустой — не регистрировать).
+     * @param secretToken           Секрет, который Telegram передаёт в заголовке запроса (пустой — не проверять).
+     * @param enqueueTimeout        Время ожидания места в очереди для одного запроса.
+     */
+    public WebhookController(CategoryBot categoryBot, UpdateDispatcher dispatcher, ObjectMapper objectMapper,
+                             LegacyTenantMigration legacyTenantMigration,
+                             @Value("${telegram.bot.webhook.public-url:}") String publicUrl,
+                             @Value("${telegram.bot.webhook.secret-token:}") String secretToken,
+                             @Value("${telegram.bot.webhook.enqueue-timeout:2s}") Duration enqueueTimeout) {
+        this.categoryBot = categoryBot;
+        this.dispatcher = dispatcher;
+        this.objectMapper = objectMapper;
+        this.publicUrl = publicUrl;
+        this.secretToken = secretToken;
+        this.enqueueTimeout = enqueueTimeout;
+    }
+
+    /**
+     * Регистрирует webhook в Telegram после запуска приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void registerWebhook() {
+        if (publicUrl.isEmpty()) {
+            return;
+        }
+        SetWebhook setWebhook = new SetWebhook(publicUrl);
+        if (!secretToken.isEmpty()) {
+            setWebhook.setSecretToken(secretToken);
+        }
+        try {
+            categoryBot.execute(setWebhook);
+        } catch (TelegramApiException e) {
+            throw new IllegalStateException("Failed to register webhook", e);
+        }
+    }
+
+    /**
+     * Принимает одно обновление или массив обновлений.
+     *
+     * @param token Значение заголовка с секретом.
+     * @param body  JSON-объект Update или массив таких объектов.
+     * @return 200 со счётчиками, если все обновления приняты или уже были приняты раньше;
+     *         503, если часть не поместилась в очередь;
+     *         401 при неверном секрете; 400 при некорректном теле.
+     */
+    @PostMapping(path = "${telegram.bot.webhook.path:/telegram/webhook}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> onUpdates(
+            @RequestHeader(name = SECRET_HEADER, required = false) String token,
+            @RequestBody JsonNode body) {
+        if (!secretToken.isEmpty() && !secretToken.equals(token)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        List<Update> updates = new ArrayList<>();
+        try {
+            if (body.isArray()) {
+                for (JsonNode node : body) {
+                    updates.add(objectMapper.treeToValue(node, Update.class));
+                }
+            } else {
+                updates.add(objectMapper.treeToValue(body, Update.class));
+            }
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Integer> rejected = new ArrayList<>();
+        int duplicates = 0;
+        long deadline = System.nanoTime() + enqueueTimeout.toNanos();
+        for (Update update : updates) {
+            Integer updateId = update.getUpdateId();
+            if (updateId != null && !remember(updateId)) {
+                duplicates++; // Уже принято при прошлой доставке этого пакета
+                continue;
+            }
+            Duration remaining = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+            if (!dispatcher.dispatch(update, categoryBot::handleUpdate, remaining)) {
+                rejected.add(updateId);
+                if (updateId != null) {
+                    forget(updateId); // Telegram доставит его повторно
+                }
+            }
+        }
+
+        Map<String, Object> result = Map.of("accepted", updates.size() - duplicates - rejected.size(),
+                "duplicate", duplicates, "rejected", rejected);
+        return rejected.isEmpty()
+                ? ResponseEntity.ok(result)
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "1").body(result);
+    }
+
+    /**
+     * @return true, если обновление с таким id ещё не принималось.
+     */
+    private boolean remember(int updateId) {
+        synchronized (recentUpdates) {
+            return recentUpdates.add(updateId);
+        }
+    }
+
+    private void forget(int updateId) {
+        synchronized (recentUpdates) {
+            recentUpdates.remove(updateId);
+        }
+    }
+}
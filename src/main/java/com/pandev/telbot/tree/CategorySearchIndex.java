@@ -0,0 +1,447 @@
+package com.pandev.telbot.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Неизменяемый поисковый индекс названий категорий одного снимка дерева.
+ *
+ * Основа — нормализованные названия с id по возрастанию, разложенные по блокам не длиннее 2 * {@link #BLOCK}:
+ * поиск по префиксу — двоичный поиск нижней границы по блокам и внутри блока и последовательный просмотр
+ * совпадений, O(log n + k). Для поиска по подстроке и нечёткого поиска лениво, при первом таком запросе,
+ * строятся списки id по триграммам: подстрока проверяется только у названий из самого короткого списка
+ * триграмм запроса, нечёткие совпадения ранжируются по доле общих триграмм (коэффициент Жаккара).
+ *
+ * При добавлении, удалении и переименовании категорий индекс не перестраивается и не копируется целиком:
+ * {@link #withAdded(Collection)} и {@link #without(Collection)} копируют только затронутые блоки и массив
+ * ссылок на блоки, а списки триграмм, если они уже построены, хранятся в {@link PersistentMap} и переходят
+ * в новый индекс с изменёнными лишь триграммами затронутых названий.
+ */
+public final class CategorySearchIndex {
+    /** Минимальный коэффициент сходства для нечёткого совпадения. */
+    static final double MIN_SIMILARITY = 0.3;
+
+    /** Размер блока при построении; блок, доросший до двойного размера, делится пополам. */
+    static final int BLOCK = 128;
+
+    private static final char PAD = ' ';
+
+    private final Block[] blocks; // Непустые блоки по возрастанию названий
+    private final int size;
+    private volatile Postings postings; // Строятся лениво и переносятся в производные индексы
+
+    /**
+     * Способ, которым найдено совпадение.
+     */
+    public enum MatchKind {
+        /** Название начинается с запроса. */
+        PREFIX,
+        /** Название содержит запрос. */
+        SUBSTRING,
+        /** Название похоже на запрос (общие триграммы). */
+        FUZZY
+    }
+
+    /**
+     * Найденная категория.
+     *
+     * @param id   Идентификатор категории.
+     * @param kind Способ совпадения.
+     */
+    public record Match(long id, MatchKind kind) {
+    }
+
+    private CategorySearchIndex(Block[] blocks, int size, Postings postings) {
+        this.blocks = blocks;
+        this.size = size;
+        this.postings = postings;
+    }
+
+    /**
+     * Строит индекс по всем узлам дерева за O(n log n).
+     *
+     * @param nodes Узлы снимка.
+     * @return Новый индекс.
+     */
+    static CategorySearchIndex build(Collection<CategoryTree.Node> nodes) {
+        Entry[] entries = new Entry[nodes.size()];
+        int i = 0;
+        for (CategoryTree.Node node : nodes) {
+            entries[i++] = new Entry(CategoryTree.normalize(node.name()), node.id());
+        }
+        Arrays.sort(entries);
+        Block[] blocks = new Block[(entries.length + BLOCK - 1) / BLOCK];
+        for (int b = 0; b < blocks.length; b++) {
+            int from = b * BLOCK;
+            int count = Math.min(BLOCK, entries.length - from);
+            String[] keys = new String[count];
+            long[] ids = new long[count];
+            for (int j = 0; j < count; j++) {
+                keys[j] = entries[from + j].key;
+                ids[j] = entries[from + j].id;
+            }
+            blocks[b] = new Block(keys, ids);
+        }
+        return new CategorySearchIndex(blocks, entries.length, null);
+    }
+
+    /**
+     * @return Количество названий в индексе.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Возвращает индекс с добавленными категориями.
+     *
+     * @param rows Новые категории.
+     * @return Новый индекс.
+     */
+    CategorySearchIndex withAdded(Collection<CategoryTree.Row> rows) {
+        if (rows.isEmpty()) {
+            return this;
+        }
+        List<Block> edited = new ArrayList<>(Arrays.asList(blocks));
+        Postings current = postings;
+        PersistentMap.Builder<Long, PersistentMap<Long, String>> trigrams = current == null ? null : current.map.builder();
+        for (CategoryTree.Row row : rows) {
+            String key = CategoryTree.normalize(row.name());
+            insert(edited, key, row.id());
+            if (trigrams != null) {
+                for (long t : trigramsOf(key)) {
+                    PersistentMap<Long, String> posting = trigrams.get(t);
+                    trigrams.put(t, (posting == null ? PersistentMap.<Long, String>empty() : posting).plus(row.id(), key));
+                }
+            }
+        }
+        return new CategorySearchIndex(edited.toArray(new Block[0]), size + rows.size(),
+                trigrams == null ? null : new Postings(trigrams.build(), current.builds));
+    }
+
+    /**
+     * Возвращает индекс без указанных категорий.
+     *
+     * @param removed Удаляемые узлы со старыми названиями.
+     * @return Новый индекс.
+     */
+    CategorySearchIndex without(Collection<CategoryTree.Node> removed) {
+        if (removed.isEmpty()) {
+            return this;
+        }
+        List<Block> edited = new ArrayList<>(Arrays.asList(blocks));
+        Postings current = postings;
+        PersistentMap.Builder<Long, PersistentMap<Long, String>> trigrams = current == null ? null : current.map.builder();
+        int removedCount = 0;
+        for (CategoryTree.Node node : removed) {
+            String key = CategoryTree.normalize(node.name());
+            if (!remove(edited, key, node.id())) {
+                continue;
+            }
+            removedCount++;
+            if (trigrams != null) {
+                for (long t : trigramsOf(key)) {
+                    PersistentMap<Long, String> posting = trigrams.get(t);
+                    if (posting == null) {
+                        continue;
+                    }
+                    PersistentMap<Long, String> rest = posting.minus(node.id());
+                    if (rest.size() == 0) {
+                        trigrams.remove(t);
+                    } else {
+                        trigrams.put(t, rest);
+                    }
+                }
+            }
+        }
+        if (removedCount == 0) {
+            return this;
+        }
+        return new CategorySearchIndex(edited.toArray(new Block[0]), size - removedCount,
+                trigrams == null ? null : new Postings(trigrams.build(), current.builds));
+    }
+
+    /**
+     * Ищет категории по запросу: сначала совпадения по префиксу, затем по подстроке, затем нечёткие,
+     * пока не набрано limit результатов. Регистр не учитывается.
+     *
+     * @param query Запрос.
+     * @param limit Максимальное количество результатов.
+     * @return Найденные категории без повторов.
+     */
+    public List<Match> search(String query, int limit) {
+        String q = CategoryTree.normalize(query.strip());
+        Set<Long> seen = new LinkedHashSet<>();
+        List<Match> matches = new ArrayList<>();
+        if (q.isEmpty() || limit <= 0) {
+            return matches;
+        }
+
+        prefix(q, limit, seen, matches);
+        if (matches.size() < limit && q.length() >= 3) {
+            substring(q, limit, seen, matches);
+        }
+        if (matches.size() < limit) {
+            fuzzy(q, limit, seen, matches);
+        }
+        return matches;
+    }
+
+    /**
+     * @return Сколько раз списки триграмм этого индекса и индексов, от которых он произошёл, строились с нуля.
+     */
+    int postingBuilds() {
+        Postings current = postings;
+        return current == null ? 0 : current.builds;
+    }
+
+    private void prefix(String q, int limit, Set<Long> seen, List<Match> matches) {
+        List<Block> all = Arrays.asList(blocks);
+        if (all.isEmpty()) {
+            return;
+        }
+        int b = blockFor(all, q, Long.MIN_VALUE);
+        for (int at = blocks[b].lowerBound(q, Long.MIN_VALUE); b < blocks.length; b++, at = 0) {
+            Block block = blocks[b];
+            for (int i = at; i < block.keys.length; i++) {
+                if (!block.keys[i].startsWith(q) || matches.size() >= limit) {
+                    return;
+                }
+                if (seen.add(block.ids[i])) {
+                    matches.add(new Match(block.ids[i], MatchKind.PREFIX));
+                }
+            }
+        }
+    }
+
+    private void substring(String q, int limit, Set<Long> seen, List<Match> matches) {
+        PersistentMap<Long, PersistentMap<Long, String>> index = trigrams();
+        PersistentMap<Long, String> rarest = null;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            PersistentMap<Long, String> posting = index.get(trigram(q, i));
+            if (posting == null) {
+                return; // Триграммы нет ни в одном названии — подстроки тоже
+            }
+            if (rarest == null || posting.size() < rarest.size()) {
+                rarest = posting;
+            }
+        }
+        List<Entry> found = new ArrayList<>();
+        rarest.forEach((id, key) -> {
+            if (key.contains(q) && !seen.contains(id)) {
+                found.add(new Entry(key, id));
+            }
+        });
+        found.sort(null); // Списки триграмм упорядочены по хешу id, результаты — по названию
+        for (Entry entry : found) {
+            if (matches.size() >= limit) {
+                return;
+            }
+            seen.add(entry.id);
+            matches.add(new Match(entry.id, MatchKind.SUBSTRING));
+        }
+    }
+
+    private void fuzzy(String q, int limit, Set<Long> seen, List<Match> matches) {
+        PersistentMap<Long, PersistentMap<Long, String>> index = trigrams();
+        Set<Long> queryTrigrams = trigramsOf(q);
+        Map<Long, Integer> shared = new HashMap<>();
+        Map<Long, String> keys = new HashMap<>();
+        for (long t : queryTrigrams) {
+            PersistentMap<Long, String> posting = index.get(t);
+            if (posting != null) {
+                posting.forEach((id, key) -> {
+                    shared.merge(id, 1, Integer::sum);
+                    keys.putIfAbsent(id, key);
+                });
+            }
+        }
+        List<Scored> scored = new ArrayList<>();
+        shared.forEach((id, count) -> {
+            String key = keys.get(id);
+            double similarity = count / (double) (queryTrigrams.size() + trigramsOf(key).size() - count);
+            if (similarity >= MIN_SIMILARITY) {
+                scored.add(new Scored(new Entry(key, id), (int) (similarity * 1000)));
+            }
+        });
+        scored.sort((x, y) -> x.score != y.score ? Integer.compare(y.score, x.score) : x.entry.compareTo(y.entry));
+        for (Scored candidate : scored) {
+            if (matches.size() >= limit) {
+                return;
+            }
+            if (seen.add(candidate.entry.id)) {
+                matches.add(new Match(candidate.entry.id, MatchKind.FUZZY));
+            }
+        }
+    }
+
+    /**
+     * Строит списки id по триграммам дополненных пробелами названий; производные индексы
+     * получают их уже готовыми и меняют только триграммы затронутых названий.
+     */
+    private PersistentMap<Long, PersistentMap<Long, String>> trigrams() {
+        Postings current = postings;
+        if (current != null) {
+            return current.map;
+        }
+        synchronized (this) {
+            if (postings != null) {
+                return postings.map;
+            }
+            Map<Long, PersistentMap.Builder<Long, String>> lists = new HashMap<>();
+            for (Block block : blocks) {
+                for (int i = 0; i < block.keys.length; i++) {
+                    for (long t : trigramsOf(block.keys[i])) {
+                        lists.computeIfAbsent(t, k -> PersistentMap.<Long, String>empty().builder())
+                                .put(block.ids[i], block.keys[i]);
+                    }
+                }
+            }
+            PersistentMap.Builder<Long, PersistentMap<Long, String>> built = PersistentMap.<Long, PersistentMap<Long, String>>empty().builder();
+            lists.forEach((t, list) -> built.put(t, list.build()));
+            postings = new Postings(built.build(), 1);
+            return postings.map;
+        }
+    }
+
+    private static Set<Long> trigramsOf(String key) {
+        String padded = pad(key);
+        Set<Long> distinct = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            distinct.add(trigram(padded, i));
+        }
+        return distinct;
+    }
+
+    private static String pad(String key) {
+        return "" + PAD + PAD + key + PAD;
+    }
+
+    private static long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    /**
+     * Вставляет название в блок, где ему место по порядку; копируется только этот блок.
+     */
+    private static void insert(List<Block> blocks, String key, long id) {
+        if (blocks.isEmpty()) {
+            blocks.add(new Block(new String[]{key}, new long[]{id}));
+            return;
+        }
+        int b = blockFor(blocks, key, id);
+        Block block = blocks.get(b);
+        int at = block.lowerBound(key, id);
+        int count = block.keys.length;
+        String[] keys = new String[count + 1];
+        long[] ids = new long[count + 1];
+        System.arraycopy(block.keys, 0, keys, 0, at);
+        System.arraycopy(block.ids, 0, ids, 0, at);
+        keys[at] = key;
+        ids[at] = id;
+        System.arraycopy(block.keys, at, keys, at + 1, count - at);
+        System.arraycopy(block.ids, at, ids, at + 1, count - at);
+        if (keys.length < 2 * BLOCK) {
+            blocks.set(b, new Block(keys, ids));
+            return;
+        }
+        int half = keys.length / 2;
+        blocks.set(b, new Block(Arrays.copyOfRange(keys, 0, half), Arrays.copyOfRange(ids, 0, half)));
+        blocks.add(b + 1, new Block(Arrays.copyOfRange(keys, half, keys.length), Arrays.copyOfRange(ids, half, ids.length)));
+    }
+
+    /**
+     * Удаляет название из его блока; опустевший блок убирается.
+     *
+     * @return false, если такого названия с таким id в индексе нет.
+     */
+    private static boolean remove(List<Block> blocks, String key, long id) {
+        if (blocks.isEmpty()) {
+            return false;
+        }
+        int b = blockFor(blocks, key, id);
+        Block block = blocks.get(b);
+        int at = block.lowerBound(key, id);
+        if (at == block.keys.length || block.ids[at] != id || !block.keys[at].equals(key)) {
+            return false;
+        }
+        int count = block.keys.length;
+        if (count == 1) {
+            blocks.remove(b);
+            return true;
+        }
+        String[] keys = new String[count - 1];
+        long[] ids = new long[count - 1];
+        System.arraycopy(block.keys, 0, keys, 0, at);
+        System.arraycopy(block.ids, 0, ids, 0, at);
+        System.arraycopy(block.keys, at + 1, keys, at, count - at - 1);
+        System.arraycopy(block.ids, at + 1, ids, at, count - at - 1);
+        blocks.set(b, new Block(keys, ids));
+        return true;
+    }
+
+    /**
+     * @return Первый блок, последнее название которого не меньше заданного, или последний блок.
+     */
+    private static int blockFor(List<Block> blocks, String key, long id) {
+        int low = 0;
+        int high = blocks.size() - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            Block block = blocks.get(mid);
+            int last = block.keys.length - 1;
+            if (compare(block.keys[last], block.ids[last], key, id) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compare(String key, long id, String otherKey, long otherId) {
+        int byKey = key.compareTo(otherKey);
+        return byKey != 0 ? byKey : Long.compare(id, otherId);
+    }
+
+    private record Block(String[] keys, long[] ids) {
+        private int lowerBound(String key, long id) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (compare(keys[mid], ids[mid], key, id) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Списки по триграммам: триграмма → (id → нормализованное название).
+     *
+     * @param map    Списки.
+     * @param builds Сколько раз списки строились с нуля в цепочке производных индексов.
+     */
+    private record Postings(PersistentMap<Long, PersistentMap<Long, String>> map, int builds) {
+    }
+
+    private record Scored(Entry entry, int score) {
+    }
+
+    private record Entry(String key, long id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            return compare(key, id, other.key, other.id);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.pandev.telbot.tree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Неизменяемый снимок дерева категорий, оптимизированный для чтения.
+ *
+ * Содержит индексы id → узел и название → id, а также массивы идентификаторов дочерних узлов.
+ * Индекс названий регистронезависимый, как и уникальный индекс lower(name) в базе.
+ * Снимок никогда не меняется после создания: любая модификация (добавление, удаление, перенос, переименование)
+ * возвращает новый экземпляр, поэтому читатели работают без блокировок. Индексы — отображения со структурным
+ * разделением ({@link PersistentMap}): новый снимок копирует только пути к изменённым узлам и массивы детей
+ * затронутых родителей, а не всё дерево, поэтому изменение из k категорий стоит O(k log n).
+ * Поисковый индекс названий ({@link CategorySearchIndex}) строится при первом обращении и, если он уже
+ * построен, переносится в новый снимок с тем же изменением, а не собирается заново.
+ * Обход в глубину, постраничный вывод и экспорт в файлы идут по узлам снимка ({@link DepthFirstCursor})
+ * без выделения памяти на узел.
+ */
+public final class CategoryTree {
+
+    /**
+     * Пустое дерево.
+     */
+    public static final CategoryTree EMPTY = new CategoryTree(PersistentMap.empty(), PersistentMap.empty(),
+            new long[0], 0);
+
+    private static final long[] NO_CHILDREN = new long[0];
+
+    private final PersistentMap<Long, Node> nodes;
+    private final PersistentMap<String, long[]> idsByName; // Одноимённые категории — id по возрастанию
+    private final long[] rootIds;
+    private final long version;
+    private volatile CategorySearchIndex searchIndex; // Строится лениво, см. searchIndex()
+
+    private CategoryTree(PersistentMap<Long, Node> nodes, PersistentMap<String, long[]> idsByName, long[] rootIds,
+                         long version) {
+        this.nodes = nodes;
+        this.idsByName = idsByName;
+        this.rootIds = rootIds;
+        this.version = version;
+    }
+
+    /**
+     * Узел снимка.
+     *
+     * @param id       Идентификатор категории.
+     * @param name     Название категории.
+     * @param parentId Идентификатор родителя или null для корневой категории.
+     * @param childIds Идентификаторы дочерних категорий (массив не должен изменяться).
+     */
+    public record Node(long id, String name, Long parentId, long[] childIds) {
+
+        /**
+         * @return true, если у узла есть дочерние категории.
+         */
+        public boolean hasChildren() {
+            return childIds.length > 0;
+        }
+    }
+
+    /**
+     * Плоская строка для построения дерева.
+     *
+     * @param id       Идентификатор категории.
+     * @param parentId Идентификатор родителя или null.
+     * @param name     Название категории.
+     */
+    public record Row(long id, Long parentId, String name) {
+    }
+
+    /**
+     * Посетитель для обхода дерева в глубину.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * @param node  Текущий узел.
+         * @param depth Глубина узла относительно точки начала обхода (0 — сама точка).
+         */
+        void visit(Node node, int depth);
+    }
+
+    /**
+     * Строит снимок из плоского списка строк за O(n).
+     * Дочерние элементы упорядочиваются в порядке следования строк.
+     *
+     * @param rows Строки категорий.
+     * @return Новый снимок.
+     */
+    public static CategoryTree build(Collection<Row> rows) {
+        Map<Long, List<Long>> childrenByParent = new HashMap<>();
+        List<Long> roots = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.parentId() == null) {
+                roots.add(row.id());
+            } else {
+                childrenByParent.computeIfAbsent(row.parentId(), k -> new ArrayList<>()).add(row.id());
+            }
+        }
+
+        PersistentMap.Builder<Long, Node> nodes = PersistentMap.<Long, Node>empty().builder();
+        PersistentMap.Builder<String, long[]> idsByName = PersistentMap.<String, long[]>empty().builder();
+        for (Row row : rows) {
+            List<Long> children = childrenByParent.get(row.id());
+            nodes.put(row.id(), new Node(row.id(), row.name(), row.parentId(), toArray(children)));
+            addName(idsByName, row.name(), row.id());
+        }
+        return new CategoryTree(nodes.build(), idsByName.build(), toArray(roots), 0);
+    }
+
+    /**
+     * @return Количество узлов в снимке.
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return Номер версии снимка; увеличивается при каждом изменении. Снимки, выданные
+     *         {@link CategoryTreeStore}, нумеруются монотонно и после перезагрузки, поэтому версия
+     *         служит ключом кэшей, построенных по снимку.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Возвращает тот же снимок с другим номером версии.
+     */
+    CategoryTree withVersion(long newVersion) {
+        return new CategoryTree(nodes, idsByName, rootIds, newVersion).withIndex(searchIndex);
+    }
+
+    /**
+     * Возвращает поисковый индекс названий снимка; при первом обращении строит его за O(n log n).
+     *
+     * @return Индекс для поиска по префиксу, подстроке и нечёткого поиска.
+     */
+    public CategorySearchIndex searchIndex() {
+        CategorySearchIndex index = searchIndex;
+        if (index == null) {
+            List<Node> values = new ArrayList<>(nodes.size());
+            nodes.forEach((id, node) -> values.add(node));
+            index = CategorySearchIndex.build(values);
+            searchIndex = index; // Гонка безвредна: оба потока построят одинаковый индекс
+        }
+        return index;
+    }
+
+    /**
+     * @return Идентификаторы корневых категорий (массив не должен изменяться).
+     */
+    public long[] rootIds() {
+        return rootIds;
+    }
+
+    /**
+     * @param id Идентификатор категории.
+     * @return Узел или null, если он отсутствует.
+     */
+    public Node node(long id) {
+        return nodes.getLong(id);
+    }
+
+    /**
+     * Приводит название к ключу регистронезависимого поиска.
+     *
+     * @param name Название категории.
+     * @return Нормализованное название.
+     */
+    public static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Находит узел по названию без учёта регистра.
+     *
+     * @param name Название категории.
+     * @return Optional с узлом, если он найден.
+     */
+    public Optional<Node> findByName(String name) {
+        long[] ids = idsByName.get(normalize(name));
+        return ids == null ? Optional.empty() : Optional.ofNullable(nodes.getLong(ids[0]));
+    }
+
+    /**
+     * Возвращает путь от корня до узла включительно. Подъём по цепочке родителей занимает O(глубина).
+     *
+     * @param id Идентификатор категории.
+     * @return Узлы пути, начиная с корневого; пустой список, если категория отсутствует.
+     */
+    public List<Node> pathOf(long id) {
+        List<Node> path = new ArrayList<>();
+        Node node = nodes.getLong(id);
+        while (node != null) {
+            path.add(node);
+            node = node.parentId() == null ? null : nodes.get(node.parentId());
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    /**
+     * Проверяет, лежит ли узел в поддереве другого узла (включая сам этот узел).
+     * Подъём по цепочке родителей занимает O(глубина).
+     *
+     * @param ancestorId Идентификатор предполагаемого предка.
+     * @param id         Идентификатор проверяемого узла.
+     * @return true, если id совпадает с ancestorId или является его потомком.
+     */
+    public boolean isInSubtree(long ancestorId, long id) {
+        Node node = nodes.getLong(id);
+        while (node != null) {
+            if (node.id() == ancestorId) {
+                return true;
+            }
+            node = node.parentId() == null ? null : nodes.get(node.parentId());
+        }
+        return false;
+    }
+
+    /**
+     * @return Курсор обхода всех корневых категорий и их потомков в глубину (pre-order).
+     */
+    public DepthFirstCursor depthFirst() {
+        DepthFirstCursor cursor = new DepthFirstCursor(this);
+        cursor.push(rootIds, 0);
+        return cursor;
+    }
+
+    /**
+     * Обходит все корневые категории и их потомков в глубину (pre-order).
+     *
+     * @param visitor Посетитель.
+     */
+    public void forEachDepthFirst(Visitor visitor) {
+        DepthFirstCursor cursor = depthFirst();
+        while (cursor.advance()) {
+            visitor.visit(cursor.node(), cursor.depth());
+        }
+    }
+
+    /**
+     * Обходит поддерево, начиная с указанного узла, в глубину (pre-order).
+     * Обход итеративный, поэтому глубина дерева не ограничена размером стека.
+     *
+     * @param startId Идентификатор начального узла.
+     * @param visitor Посетитель.
+     */
+    public void forEachDepthFirst(long startId, Visitor visitor) {
+        DepthFirstCursor cursor = new DepthFirstCursor(this);
+        cursor.push(new long[]{startId}, 0);
+        while (cursor.advance()) {
+            visitor.visit(cursor.node(), cursor.depth());
+        }
+    }
+
+    /**
+     * Дописывает текстовое представление поддерева в построитель: каждая категория выводится
+     * ровно один раз строкой вида «отступ - название».
+     *
+     * @param startId Идентификатор корня поддерева.
+     * @param sb      Построитель, в который добавляется текст.
+     */
+    public void appendText(long startId, StringBuilder sb) {
+        forEachDepthFirst(startId, (node, depth) -> {
+            for (int i = 0; i < depth; i++) {
+                sb.append("  ");
+            }
+            sb.append("- ").append(node.name()).append('\n');
+        });
+    }
+
+    /**
+     * Возвращает снимок с добавленной категорией.
+     * Если категория с таким id уже присутствует, снимок возвращается без изменений.
+     *
+     * @param id       Идентификатор новой категории.
+     * @param name     Название.
+     * @param parentId Идентификатор родителя или null.
+     * @return Новый снимок.
+     */
+    public CategoryTree withAdded(long id, String name, Long parentId) {
+        return withAdded(List.of(new Row(id, parentId, name)));
+    }
+
+    /**
+     * Возвращает снимок с пакетом добавленных категорий. Строки должны быть упорядочены так,
+     * чтобы родитель шёл раньше потомков; уже присутствующие id пропускаются.
+     *
+     * @param rows Новые категории.
+     * @return Новый снимок.
+     */
+    public CategoryTree withAdded(Collection<Row> rows) {
+        if (rows.isEmpty()) {
+            return this;
+        }
+        PersistentMap.Builder<Long, Node> newNodes = nodes.builder();
+        PersistentMap.Builder<String, long[]> newIdsByName = idsByName.builder();
+        // Новые дочерние id копятся по родителям, чтобы каждый массив детей копировался один раз на пакет.
+        Map<Long, List<Long>> addedChildren = new HashMap<>();
+        List<Long> addedRoots = new ArrayList<>();
+        List<Row> addedRows = new ArrayList<>();
+        for (Row row : rows) {
+            if (newNodes.get(row.id()) != null) {
+                continue;
+            }
+            if (row.parentId() == null) {
+                addedRoots.add(row.id());
+            } else if (newNodes.get(row.parentId()) != null) {
+                addedChildren.computeIfAbsent(row.parentId(), k -> new ArrayList<>()).add(row.id());
+            } else {
+                continue;
+            }
+            newNodes.put(row.id(), new Node(row.id(), row.name(), row.parentId(), NO_CHILDREN));
+            addName(newIdsByName, row.name(), row.id());
+            addedRows.add(row);
+        }
+        if (addedRoots.isEmpty() && addedChildren.isEmpty()) {
+            return this;
+        }
+        addedChildren.forEach((parentId, childIds) -> {
+            Node parent = newNodes.get(parentId);
+            newNodes.put(parentId, new Node(parent.id(), parent.name(), parent.parentId(),
+                    concat(parent.childIds(), childIds)));
+        });
+        CategorySearchIndex index = searchIndex;
+        return new CategoryTree(newNodes.build(), newIdsByName.build(), concat(rootIds, addedRoots), version + 1)
+                .withIndex(index == null ? null : index.withAdded(addedRows));
+    }
+
+    /**
+     * Возвращает снимок без указанной категории и всех её потомков.
+     *
+     * @param id Идентификатор удаляемой категории.
+     * @return Новый снимок или текущий, если категория отсутствует.
+     */
+    public CategoryTree withoutSubtree(long id) {
+        Node removed = nodes.getLong(id);
+        if (removed == null) {
+            return this;
+        }
+        PersistentMap.Builder<Long, Node> newNodes = nodes.builder();
+        PersistentMap.Builder<String, long[]> newIdsByName = idsByName.builder();
+        List<Node> removedNodes = new ArrayList<>();
+        forEachDepthFirst(id, (node, depth) -> {
+            newNodes.remove(node.id());
+            removeName(newIdsByName, node.name(), node.id());
+            removedNodes.add(node);
+        });
+
+        long[] newRoots = rootIds;
+        if (removed.parentId() == null) {
+            newRoots = without(rootIds, id);
+        } else {
+            Node parent = newNodes.get(removed.parentId());
+            if (parent != null) {
+                newNodes.put(parent.id(), new Node(parent.id(), parent.name(), parent.parentId(),
+                        without(parent.childIds(), id)));
+            }
+        }
+        CategorySearchIndex index = searchIndex;
+        return new CategoryTree(newNodes.build(), newIdsByName.build(), newRoots, version + 1)
+                .withIndex(index == null ? null : index.without(removedNodes));
+    }
+
+    /**
+     * Возвращает снимок, в котором категория вместе с поддеревом перенесена к новому родителю.
+     * Меняются только узел и массивы детей старого и нового родителя; потомки не копируются.
+     *
+     * @param id          Идентификатор переносимой категории.
+     * @param newParentId Идентификатор нового родителя или null, чтобы сделать категорию корневой.
+     * @return Новый снимок или текущий, если узлов нет или перенос создал бы цикл.
+     */
+    public CategoryTree withMoved(long id, Long newParentId) {
+        Node moved = nodes.getLong(id);
+        if (moved == null || Objects.equals(moved.parentId(), newParentId)) {
+            return this;
+        }
+        if (newParentId != null && (nodes.get(newParentId) == null || isInSubtree(id, newParentId))) {
+            return this;
+        }
+        PersistentMap.Builder<Long, Node> newNodes = nodes.builder();
+        long[] newRoots = rootIds;
+        if (moved.parentId() == null) {
+            newRoots = without(newRoots, id);
+        } else {
+            Node oldParent = newNodes.get(moved.parentId());
+            newNodes.put(oldParent.id(), new Node(oldParent.id(), oldParent.name(), oldParent.parentId(),
+                    without(oldParent.childIds(), id)));
+        }
+        if (newParentId == null) {
+            newRoots = concat(newRoots, List.of(id));
+        } else {
+            Node newParent = newNodes.get(newParentId);
+            newNodes.put(newParentId, new Node(newParent.id(), newParent.name(), newParent.parentId(),
+                    concat(newParent.childIds(), List.of(id))));
+        }
+        newNodes.put(id, new Node(id, moved.name(), newParentId, moved.childIds()));
+        // Названия не меняются, поэтому поисковый индекс переходит в новый снимок как есть.
+        return new CategoryTree(newNodes.build(), idsByName, newRoots, version + 1).withIndex(searchIndex);
+    }
+
+    /**
+     * Возвращает снимок с переименованной категорией.
+     *
+     * @param id      Идентификатор категории.
+     * @param newName Новое название.
+     * @return Новый снимок или текущий, если категория отсутствует.
+     */
+    public CategoryTree withRenamed(long id, String newName) {
+        Node renamed = nodes.getLong(id);
+        if (renamed == null) {
+            return this;
+        }
+        PersistentMap<Long, Node> newNodes = nodes.plus(id, new Node(id, newName, renamed.parentId(), renamed.childIds()));
+        PersistentMap.Builder<String, long[]> newIdsByName = idsByName.builder();
+        removeName(newIdsByName, renamed.name(), id);
+        addName(newIdsByName, newName, id);
+        CategorySearchIndex index = searchIndex;
+        return new CategoryTree(newNodes, newIdsByName.build(), rootIds, version + 1)
+                .withIndex(index == null ? null
+                        : index.without(List.of(renamed)).withAdded(List.of(new Row(id, renamed.parentId(), newName))));
+    }
+
+    private CategoryTree withIndex(CategorySearchIndex index) {
+        searchIndex = index;
+        return this;
+    }
+
+    /**
+     * Добавляет id к названию; одноимённые категории хранятся по возрастанию id, поиск возвращает наименьший.
+     */
+    private static void addName(PersistentMap.Builder<String, long[]> idsByName, String name, long id) {
+        String key = normalize(name);
+        long[] ids = idsByName.get(key);
+        if (ids == null) {
+            idsByName.put(key, new long[]{id});
+            return;
+        }
+        int position = Arrays.binarySearch(ids, id);
+        if (position < 0) {
+            position = -position - 1;
+            long[] grown = new long[ids.length + 1];
+            System.arraycopy(ids, 0, grown, 0, position);
+            grown[position] = id;
+            System.arraycopy(ids, position, grown, position + 1, ids.length - position);
+            idsByName.put(key, grown);
+        }
+    }
+
+    private static void removeName(PersistentMap.Builder<String, long[]> idsByName, String name, long id) {
+        String key = normalize(name);
+        long[] ids = idsByName.get(key);
+        if (ids == null) {
+            return;
+        }
+        long[] rest = without(ids, id);
+        if (rest.length == 0) {
+            idsByName.remove(key);
+        } else if (rest != ids) {
+            idsByName.put(key, rest);
+        }
+    }
+
+    private static long[] toArray(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return NO_CHILDREN;
+        }
+        long[] result = new long[ids.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ids.get(i);
+        }
+        return result;
+    }
+
+    private static long[] concat(long[] ids, List<Long> extra) {
+        if (extra.isEmpty()) {
+            return ids;
+        }
+        long[] result = Arrays.copyOf(ids, ids.length + extra.size());
+        for (int i = 0; i < extra.size(); i++) {
+            result[ids.length + i] = extra.get(i);
+        }
+        return result;
+    }
+
+    private static long[] without(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                long[] result = new long[ids.length - 1];
+                System.arraycopy(ids, 0, result, 0, i);
+                System.arraycopy(ids, i + 1, result, i, ids.length - i - 1);
+                return result;
+            }
+        }
+        return ids;
+    }
+}
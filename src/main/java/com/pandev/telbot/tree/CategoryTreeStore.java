@@ -0,0 +1,266 @@
+package com.pandev.telbot.tree;
+
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryRepository;
+import com.pandev.telbot.repository.CategoryRow;
+import com.pandev.telbot.repository.TreeFingerprint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Хранилище актуальных снимков деревьев категорий, по одному на арендатора (чат).
+ *
+ * Снимок арендатора загружается из базы при первом обращении, после чего операции записи
+ * применяют к нему дельты (copy-on-write). Читатели получают ссылку на текущий снимок без блокировок;
+ * загрузка блокирует только свой арендатор, поэтому загрузка большого дерева не задерживает остальные чаты.
+ * Арендатор берётся из {@link TenantContext}.
+ *
+ * Суммарное количество узлов в памяти ограничено свойством telbot.tree-cache.max-nodes: при превышении
+ * вытесняются снимки арендаторов, к которым дольше всего не обращались (снимок текущего арендатора
+ * не вытесняется, даже если он один больше лимита). Вытесненный снимок будет перечитан при следующем обращении.
+ *
+ * Если включён {@link TreeJournal}, снимок арендатора восстанавливается из локального двоичного снимка и хвоста
+ * журнала изменений; рекурсивный запрос ко всей таблице выполняется, только если файлов нет или ревизия,
+ * записанная в журнале, не совпала с ревизией дерева в базе ({@link CategoryRepository#revision(long)}).
+ * Каждое изменение, применённое через {@link #updateAfterCommit(TreeOp)}, дописывается в журнал вместе
+ * с ревизией под блокировкой арендатора, в том же порядке, что и к снимку. Журнал вытесненного арендатора
+ * освобождается.
+ *
+ * Версия снимка ({@link CategoryTree#version()}) монотонно растёт при каждом изменении,
+ * в том числе после вытеснения и перезагрузки, поэтому по паре (арендатор, версия) можно проверять актуальность кэшей.
+ */
+@Component
+public class CategoryTreeStore {
+    private final CategoryRepository categoryRepository;
+    private final TreeJournal journal;
+    private final long maxNodes;
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicLong cachedNodes = new AtomicLong();
+    private final AtomicLong lastVersion = new AtomicLong(); // Максимальная выданная версия по всем арендаторам
+    private final AtomicLong accessClock = new AtomicLong();
+
+    /**
+     * Снимок одного арендатора. Снимок и флаг вытеснения изменяются под блокировкой объекта.
+     */
+    private static final class Slot {
+        private volatile CategoryTree tree;
+        private volatile long lastAccess;
+        private boolean evicted; // Слот удалён из карты; обращения должны создать новый
+    }
+
+    /**
+     * Конструктор класса.
+     *
+     * @param categoryRepository Репозиторий, из которого загружаются снимки.
+     * @param journal            Локальный журнал снимков и изменений для быстрого холодного старта.
+     * @param maxNodes           Максимальное суммарное количество узлов в снимках всех арендаторов.
+     */
+    public CategoryTreeStore(CategoryRepository categoryRepository, TreeJournal journal,
+                             @Value("${telbot.tree-cache.max-nodes:5000000}") long maxNodes) {
+        this.categoryRepository = categoryRepository;
+        this.journal = journal;
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * Возвращает текущий снимок дерева арендатора, загружая его из базы при первом обращении.
+     *
+     * @return Актуальный снимок.
+     */
+    public CategoryTree current() {
+        long tenantId = TenantContext.current();
+        while (true) {
+            Slot slot = slots.computeIfAbsent(tenantId, id -> new Slot());
+            slot.lastAccess = accessClock.incrementAndGet();
+            CategoryTree snapshot = slot.tree;
+            if (snapshot != null) {
+                return snapshot;
+            }
+            synchronized (slot) {
+                if (slot.evicted) {
+                    continue; // Слот вытеснен между поиском и блокировкой
+                }
+                snapshot = slot.tree;
+                if (snapshot == null) {
+                    snapshot = load(tenantId).withVersion(lastVersion.incrementAndGet());
+                    slot.tree = snapshot;
+                    cachedNodes.addAndGet(snapshot.size());
+                }
+            }
+            evictIfNeeded(tenantId);
+            return snapshot;
+        }
+    }
+
+    /**
+     * Возвращает снимок текущего арендатора, если он уже загружен, не инициируя загрузку.
+     *
+     * @return Текущий снимок или null.
+     */
+    public CategoryTree peek() {
+        Slot slot = slots.get(TenantContext.current());
+        return slot != null ? slot.tree : null;
+    }
+
+    /**
+     * Применяет изменение после успешной фиксации текущей транзакции, а вне транзакции — сразу.
+     * Так снимок и журнал не получают изменений, которые затем были откачены.
+     * Ревизия для журнала читается в самой транзакции перед фиксацией: строка ревизии арендатора заблокирована
+     * этой транзакцией, поэтому прочитанное значение — ровно то, с которым она будет зафиксирована.
+     *
+     * @param delta Изменение, записанное в текущей транзакции.
+     */
+    public void updateAfterCommit(TreeOp delta) {
+        long tenantId = TenantContext.current(); // afterCommit может выполняться вне контекста арендатора
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private long committedRevision;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    if (journal.enabled()) {
+                        categoryRepository.flush(); // Отложенные изменения Hibernate тоже меняют ревизию
+                        committedRevision = categoryRepository.revision(tenantId);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    update(tenantId, delta, committedRevision);
+                }
+            });
+        } else {
+            update(tenantId, delta, revision(tenantId));
+        }
+    }
+
+    /**
+     * @return Суммарное количество узлов в загруженных снимках.
+     */
+    public long cachedNodes() {
+        return cachedNodes.get();
+    }
+
+    /**
+     * @return Количество слотов арендаторов, включая ещё не загруженные.
+     */
+    int slotCount() {
+        return slots.size();
+    }
+
+    /**
+     * Применяет изменение к снимку арендатора и дописывает его в журнал. Если снимок ещё не загружен,
+     * изменение в снимок не попадает: следующая загрузка из базы и так прочитает зафиксированные изменения.
+     */
+    private void update(long tenantId, TreeOp delta, long revision) {
+        while (true) {
+            // Слот создаётся и для незагруженного арендатора: запись в журнал под его блокировкой
+            // не может разминуться с одновременной загрузкой снимка из журнала. После записи такой слот
+            // удаляется, иначе слоты чатов, которые только пишут, копились бы в карте без снимков.
+            Slot slot = journal.enabled() ? slots.computeIfAbsent(tenantId, id -> new Slot()) : slots.get(tenantId);
+            if (slot == null) {
+                return;
+            }
+            synchronized (slot) {
+                if (slot.evicted) {
+                    continue;
+                }
+                journal.append(tenantId, delta, revision);
+                CategoryTree tree = slot.tree;
+                if (tree != null) {
+                    CategoryTree updated = delta.applyTo(tree);
+                    slot.tree = updated;
+                    cachedNodes.addAndGet(updated.size() - tree.size());
+                    lastVersion.accumulateAndGet(updated.version(), Math::max);
+                    if (journal.needsSnapshot(tenantId)) {
+                        journal.writeSnapshot(tenantId, updated, revision);
+                    }
+                } else {
+                    slot.evicted = true;
+                    slots.remove(tenantId, slot);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Вытесняет давно не использовавшиеся снимки, пока суммарное количество узлов превышает лимит.
+     */
+    private void evictIfNeeded(long keepTenantId) {
+        while (cachedNodes.get() > maxNodes) {
+            Map.Entry<Long, Slot> eldest = null;
+            for (Map.Entry<Long, Slot> entry : slots.entrySet()) {
+                if (entry.getKey() != keepTenantId && entry.getValue().tree != null
+                        && (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess)) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return; // Остался только снимок текущего арендатора
+            }
+            evict(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    private void evict(long tenantId, Slot slot) {
+        synchronized (slot) {
+            if (slot.evicted) {
+                return;
+            }
+            if (slot.tree != null) {
+                cachedNodes.addAndGet(-slot.tree.size());
+                slot.tree = null;
+            }
+            slot.evicted = true;
+            slots.remove(tenantId, slot);
+            journal.release(tenantId);
+        }
+    }
+
+    /**
+     * Преобразует строки рекурсивного запроса в строки для построения снимка.
+     *
+     * @param categoryRows Строки, полученные из репозитория.
+     * @return Строки снимка в том же порядке.
+     */
+    public static List<CategoryTree.Row> toRows(List<CategoryRow> categoryRows) {
+        List<CategoryTree.Row> rows = new ArrayList<>(categoryRows.size());
+        for (CategoryRow row : categoryRows) {
+            rows.add(new CategoryTree.Row(row.getId(), row.getParentId(), row.getName()));
+        }
+        return rows;
+    }
+
+    private CategoryTree load(long tenantId) {
+        TreeJournal.Recovered recovered = journal.load(tenantId);
+        if (recovered != null) {
+            TreeFingerprint fingerprint = categoryRepository.fingerprint(tenantId);
+            if (fingerprint.getRevision() == recovered.revision() && fingerprint.getCount() == recovered.tree().size()) {
+                if (journal.needsSnapshot(tenantId)) {
+                    journal.writeSnapshot(tenantId, recovered.tree(), recovered.revision());
+                }
+                return recovered.tree();
+            }
+        }
+        // Ревизия читается до строк: запись, зафиксированная между запросами, попадёт в дерево,
+        // но не в ревизию снимка, и при следующей загрузке снимок будет отвергнут, а не принят устаревшим.
+        long revision = revision(tenantId);
+        // Всё дерево арендатора читается одним запросом WITH RECURSIVE, без ленивой подгрузки детей.
+        CategoryTree tree = CategoryTree.build(toRows(categoryRepository.findTreeRows(tenantId)));
+        journal.writeSnapshot(tenantId, tree, revision);
+        return tree;
+    }
+
+    private long revision(long tenantId) {
+        return journal.enabled() ? categoryRepository.revision(tenantId) : 0;
+    }
+}
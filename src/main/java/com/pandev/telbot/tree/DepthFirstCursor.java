@@ -0,0 +1,83 @@
+package com.pandev.telbot.tree;
+
+import java.util.Arrays;
+
+/**
+ * Итератор обхода снимка в глубину (pre-order) на явном стеке уровней.
+ *
+ * Уровень стека — массив id соседних узлов и позиция в нём; номер уровня совпадает с глубиной узла
+ * относительно первого уровня. Стек хранится в массивах и растёт только с глубиной дерева,
+ * поэтому шаг обхода не выделяет памяти и глубина дерева не ограничена размером стека вызовов.
+ * Курсор по всему дереву возвращает {@link CategoryTree#depthFirst()}.
+ */
+public final class DepthFirstCursor {
+    private final CategoryTree tree;
+    private long[][] levels = new long[16][];
+    private int[] positions = new int[16];
+    private int top = -1;
+    private CategoryTree.Node node;
+    private int depth;
+
+    /**
+     * @param tree Снимок дерева.
+     */
+    DepthFirstCursor(CategoryTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Добавляет уровень: обход продолжится с узла ids[position], а после его соседей вернётся
+     * к предыдущему уровню.
+     *
+     * @param ids      Идентификаторы соседних узлов (массив не изменяется).
+     * @param position Позиция первого непройденного узла.
+     */
+    void push(long[] ids, int position) {
+        top++;
+        if (top == levels.length) {
+            levels = Arrays.copyOf(levels, top * 2);
+            positions = Arrays.copyOf(positions, top * 2);
+        }
+        levels[top] = ids;
+        positions[top] = position;
+    }
+
+    /**
+     * Переходит к следующему узлу; отсутствующие в снимке id пропускаются.
+     *
+     * @return false, если обход закончен.
+     */
+    public boolean advance() {
+        while (top >= 0) {
+            if (positions[top] == levels[top].length) {
+                levels[top--] = null;
+                continue;
+            }
+            CategoryTree.Node next = tree.node(levels[top][positions[top]++]);
+            if (next == null) {
+                continue;
+            }
+            node = next;
+            depth = top;
+            if (next.hasChildren()) {
+                push(next.childIds(), 0);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Текущий узел.
+     */
+    public CategoryTree.Node node() {
+        return node;
+    }
+
+    /**
+     * @return Глубина текущего узла относительно первого уровня.
+     */
+    public int depth() {
+        return depth;
+    }
+}
@@ -0,0 +1,381 @@
+package com.pandev.telbot.tree;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Неизменяемое хеш-отображение со структурным разделением (hash array mapped trie).
+ *
+ * Ключи раскладываются по 32-ветвистому дереву по 5 бит хеша на уровень; узел хранит битовую маску
+ * занятых ветвей и плотный массив пар «ключ, значение» (ключ null — ссылка на дочерний узел).
+ * Изменение копирует только путь от корня до затронутого листа, O(log32 n) узлов, а остальные узлы
+ * остаются общими со старой версией. Полные совпадения хешей складываются в линейный список на
+ * последнем уровне.
+ *
+ * Пакет изменений выполняется через {@link Builder}: узлы, созданные построителем, он меняет на месте
+ * (с запасом ёмкости массивов, который обрезается в {@link Builder#build()}), поэтому пакет из k изменений
+ * копирует каждый узел пути не больше одного раза.
+ *
+ * @param <K> Тип ключа.
+ * @param <V> Тип значения.
+ */
+final class PersistentMap<K, V> {
+    private static final int BITS = 5;
+    private static final int MAX_SHIFT = 30; // Глубже — список полных совпадений хешей
+    private static final PersistentMap<?, ?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /**
+     * @return Пустое отображение.
+     */
+    @SuppressWarnings("unchecked")
+    static <K, V> PersistentMap<K, V> empty() {
+        return (PersistentMap<K, V>) EMPTY;
+    }
+
+    /**
+     * @return Количество ключей.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param key Ключ.
+     * @return Значение или null, если ключа нет.
+     */
+    @SuppressWarnings("unchecked")
+    V get(Object key) {
+        return (V) find(root, hash(key), key);
+    }
+
+    /**
+     * Ищет значение по ключу типа Long, не упаковывая его: хеш совпадает с {@link Long#hashCode(long)}.
+     *
+     * @param key Ключ.
+     * @return Значение или null, если ключа нет.
+     */
+    @SuppressWarnings("unchecked")
+    V getLong(long key) {
+        int h = Long.hashCode(key) * 0x9E3779B9;
+        int hash = h ^ (h >>> 16);
+        Node node = root;
+        int shift = 0;
+        while (node != null) {
+            Object[] array = node.array;
+            if (shift > MAX_SHIFT) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (array[i] instanceof Long k && k == key) {
+                        return (V) array[i + 1];
+                    }
+                }
+                return null;
+            }
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+            if (array[i] != null) {
+                return array[i] instanceof Long k && k == key ? (V) array[i + 1] : null;
+            }
+            node = (Node) array[i + 1];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    /**
+     * @return Отображение, в котором ключу сопоставлено значение.
+     */
+    PersistentMap<K, V> plus(K key, V value) {
+        return builder().put(key, value).build();
+    }
+
+    /**
+     * @return Отображение без ключа.
+     */
+    PersistentMap<K, V> minus(K key) {
+        return builder().remove(key).build();
+    }
+
+    /**
+     * Перебирает пары в порядке хешей ключей.
+     *
+     * @param action Действие для каждой пары.
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<? super K, ? super V> action) {
+        forEach(root, (BiConsumer<Object, Object>) action);
+    }
+
+    /**
+     * @return Построитель, начинающий с текущего содержимого; текущее отображение он не меняет.
+     */
+    Builder<K, V> builder() {
+        return new Builder<>(root, size);
+    }
+
+    /**
+     * Изменяемый построитель отображения для пакетных изменений.
+     * Не потокобезопасен; после {@link #build()} продолжает работать, копируя узлы заново.
+     */
+    static final class Builder<K, V> {
+        private Object edit = new Object(); // Метка узлов, которые построитель может менять на месте
+        private Node root;
+        private int size;
+
+        private Builder(Node root, int size) {
+            this.root = root;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        V get(Object key) {
+            return (V) find(root, hash(key), key);
+        }
+
+        Builder<K, V> put(K key, V value) {
+            int[] delta = {0};
+            root = PersistentMap.put(root, edit, 0, hash(key), key, value, delta);
+            size += delta[0];
+            return this;
+        }
+
+        Builder<K, V> remove(Object key) {
+            int[] delta = {0};
+            root = PersistentMap.remove(root, edit, 0, hash(key), key, delta);
+            size += delta[0];
+            return this;
+        }
+
+        PersistentMap<K, V> build() {
+            trim(root, edit, 0);
+            edit = new Object(); // Выданные узлы больше не меняются на месте
+            return root == null ? empty() : new PersistentMap<>(root, size);
+        }
+    }
+
+    private static final class Node {
+        private final Object edit;
+        private int bitmap;
+        private Object[] array;
+
+        private Node(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private Node with(Object edit, int i, Object value) {
+            if (this.edit == edit) {
+                array[i] = value;
+                return this;
+            }
+            Object[] copy = array.clone();
+            copy[i] = value;
+            return new Node(edit, bitmap, copy);
+        }
+
+        private Node replaced(Object edit, int bitmap, Object[] array) {
+            if (this.edit == edit) {
+                this.bitmap = bitmap;
+                this.array = array;
+                return this;
+            }
+            return new Node(edit, bitmap, array);
+        }
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int bit(int hash, int shift) {
+        return 1 << ((hash >>> shift) & 31);
+    }
+
+    private static Object find(Node node, int hash, Object key) {
+        int shift = 0;
+        while (node != null) {
+            Object[] array = node.array;
+            if (shift > MAX_SHIFT) {
+                for (int i = 0; i < array.length; i += 2) {
+                    if (key.equals(array[i])) {
+                        return array[i + 1];
+                    }
+                }
+                return null;
+            }
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+            if (array[i] != null) {
+                return key.equals(array[i]) ? array[i + 1] : null;
+            }
+            node = (Node) array[i + 1];
+            shift += BITS;
+        }
+        return null;
+    }
+
+    private static Node put(Node node, Object edit, int shift, int hash, Object key, Object value, int[] delta) {
+        if (node == null) {
+            delta[0]++;
+            return shift > MAX_SHIFT ? new Node(edit, 0, new Object[]{key, value})
+                    : new Node(edit, bit(hash, shift), new Object[]{key, value});
+        }
+        Object[] array = node.array;
+        if (shift > MAX_SHIFT) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return array[i + 1] == value ? node : node.with(edit, i + 1, value);
+                }
+            }
+            delta[0]++;
+            Object[] grown = Arrays.copyOf(array, array.length + 2);
+            grown[array.length] = key;
+            grown[array.length + 1] = value;
+            return node.replaced(edit, 0, grown);
+        }
+        int bit = bit(hash, shift);
+        int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            delta[0]++;
+            int count = 2 * Integer.bitCount(node.bitmap);
+            boolean editable = node.edit == edit;
+            if (editable && array.length > count) {
+                System.arraycopy(array, i, array, i + 2, count - i);
+                array[i] = key;
+                array[i + 1] = value;
+                node.bitmap |= bit;
+                return node;
+            }
+            // Узел построителя растёт с запасом, неизменяемый копируется ровно по размеру.
+            Object[] grown = new Object[editable ? Math.min(64, Math.max(4, 2 * count)) : count + 2];
+            System.arraycopy(array, 0, grown, 0, i);
+            grown[i] = key;
+            grown[i + 1] = value;
+            System.arraycopy(array, i, grown, i + 2, count - i);
+            return node.replaced(edit, node.bitmap | bit, grown);
+        }
+        Object existingKey = array[i];
+        Object existingValue = array[i + 1];
+        if (existingKey == null) {
+            Node child = put((Node) existingValue, edit, shift + BITS, hash, key, value, delta);
+            return child == existingValue ? node : node.with(edit, i + 1, child);
+        }
+        if (key.equals(existingKey)) {
+            return existingValue == value ? node : node.with(edit, i + 1, value);
+        }
+        // Ветвь занята другим ключом: оба уходят в новый дочерний узел.
+        delta[0]++;
+        Node child = split(edit, shift + BITS, hash(existingKey), existingKey, existingValue, hash, key, value);
+        return node.with(edit, i, null).with(edit, i + 1, child); // Вторая замена — уже на месте
+    }
+
+    private static Node split(Object edit, int shift, int hash1, Object key1, Object value1,
+                              int hash2, Object key2, Object value2) {
+        if (shift > MAX_SHIFT) {
+            return new Node(edit, 0, new Object[]{key1, value1, key2, value2});
+        }
+        int index1 = (hash1 >>> shift) & 31;
+        int index2 = (hash2 >>> shift) & 31;
+        if (index1 == index2) {
+            return new Node(edit, 1 << index1,
+                    new Object[]{null, split(edit, shift + BITS, hash1, key1, value1, hash2, key2, value2)});
+        }
+        return index1 < index2
+                ? new Node(edit, (1 << index1) | (1 << index2), new Object[]{key1, value1, key2, value2})
+                : new Node(edit, (1 << index1) | (1 << index2), new Object[]{key2, value2, key1, value1});
+    }
+
+    private static Node remove(Node node, Object edit, int shift, int hash, Object key, int[] delta) {
+        if (node == null) {
+            return null;
+        }
+        Object[] array = node.array;
+        if (shift > MAX_SHIFT) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    delta[0]--;
+                    return array.length == 2 ? null : node.replaced(edit, 0, without(array, i));
+                }
+            }
+            return node;
+        }
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int i = 2 * Integer.bitCount(node.bitmap & (bit - 1));
+        if (array[i] == null) {
+            Node child = remove((Node) array[i + 1], edit, shift + BITS, hash, key, delta);
+            if (child == array[i + 1]) {
+                return node;
+            }
+            if (child != null) {
+                return node.with(edit, i + 1, child);
+            }
+        } else if (key.equals(array[i])) {
+            delta[0]--;
+        } else {
+            return node;
+        }
+        return node.bitmap == bit ? null
+                : node.replaced(edit, node.bitmap ^ bit, without(array, i, 2 * Integer.bitCount(node.bitmap)));
+    }
+
+    private static Object[] without(Object[] array, int i) {
+        return without(array, i, array.length);
+    }
+
+    private static Object[] without(Object[] array, int i, int count) {
+        Object[] shrunk = new Object[count - 2];
+        System.arraycopy(array, 0, shrunk, 0, i);
+        System.arraycopy(array, i + 2, shrunk, i, count - i - 2);
+        return shrunk;
+    }
+
+    /**
+     * Обрезает запас ёмкости у узлов построителя; в неизменённые узлы не спускается.
+     */
+    private static void trim(Node node, Object edit, int shift) {
+        if (node == null || node.edit != edit || shift > MAX_SHIFT) {
+            return;
+        }
+        int count = 2 * Integer.bitCount(node.bitmap);
+        if (node.array.length > count) {
+            node.array = Arrays.copyOf(node.array, count);
+        }
+        for (int i = 0; i < count; i += 2) {
+            if (node.array[i] == null) {
+                trim((Node) node.array[i + 1], edit, shift + BITS);
+            }
+        }
+    }
+
+    private static void forEach(Node node, BiConsumer<Object, Object> action) {
+        if (node == null) {
+            return;
+        }
+        Object[] array = node.array; // После build() массивы без запаса ёмкости
+        for (int i = 0; i < array.length; i += 2) {
+            if (array[i] != null) {
+                action.accept(array[i], array[i + 1]);
+            } else {
+                forEach((Node) array[i + 1], action);
+            }
+        }
+    }
+}
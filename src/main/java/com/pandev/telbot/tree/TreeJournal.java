@@ -0,0 +1,438 @@
+package com.pandev.telbot.tree;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Локальный журнал изменений деревьев категорий для быстрого холодного старта.
+ *
+ * Для каждого арендатора на диске хранятся:
+ *  - компактный двоичный снимок дерева (tenant-ID.snap): ревизия дерева в базе и строки id, parent_id, название
+ *    в порядке обхода в глубину;
+ *  - журнал изменений, записанных после снимка (tenant-ID-G.log): отображённый в память файл,
+ *    в который дописываются {@link TreeOp} в порядке их применения к снимку в памяти, каждое — с ревизией,
+ *    которую получила транзакция этого изменения.
+ * При загрузке снимок отображается в память и разбирается, после чего воспроизводится хвост журнала —
+ * без рекурсивного запроса ко всей таблице. Когда в журнале накапливается telbot.journal.snapshot-every
+ * изменений, снимок перезаписывается (через временный файл и атомарное переименование), а журнал начинается заново
+ * со следующим номером поколения G; журналы других поколений при загрузке не читаются.
+ *
+ * База данных остаётся источником истины: журнал лишь ускоряет загрузку, и {@link CategoryTreeStore}
+ * доверяет восстановленному дереву, только если последняя записанная ревизия совпадает с ревизией в базе.
+ * Изменение, которое не попало в журнал (арендатор не был загружен, процесс упал до записи), оставляет
+ * журнал с прежней ревизией, и дерево читается из базы.
+ *
+ * Отображён в память только журнал загруженных арендаторов: при вытеснении снимка журнал сбрасывается
+ * на диск и освобождается ({@link #release(long)}).
+ * Записи журнала попадают в page cache при каждом изменении и переживают падение процесса;
+ * на диск они сбрасываются при записи снимка, при освобождении и при остановке приложения.
+ * Журнал выключен, если свойство telbot.journal.dir не задано.
+ */
+@Component
+public class TreeJournal {
+    private static final Logger logger = LoggerFactory.getLogger(TreeJournal.class); // log — журнал арендатора
+    private static final int SNAPSHOT_MAGIC = 0x54425332; // "TBS2"
+    private static final long NO_PARENT = -1;
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte MOVE = 3;
+    private static final byte RENAME = 4;
+
+    private final Path dir;
+    private final int snapshotEvery;
+    private final int logChunkBytes;
+    private final ConcurrentHashMap<Long, Log> logs = new ConcurrentHashMap<>();
+
+    /**
+     * Дерево, восстановленное из снимка и журнала.
+     *
+     * @param tree     Снимок дерева.
+     * @param revision Ревизия дерева в базе, с которой согласован снимок вместе с журналом.
+     * @param replayed Количество воспроизведённых изменений журнала.
+     */
+    public record Recovered(CategoryTree tree, long revision, int replayed) {
+    }
+
+    /**
+     * Журнал одного поколения: отображённый в память файл, дописываемый записями
+     * [длина int][тип byte][ревизия long][данные]. Нулевая длина обозначает конец журнала; длина записывается
+     * последней, поэтому недописанная при падении запись не читается.
+     */
+    private final class Log {
+        private final long generation;
+        private final Path file;
+        private MappedByteBuffer buffer;
+        private int position;
+        private int ops;
+        private boolean closed;
+
+        private Log(long generation, Path file) throws IOException {
+            this.generation = generation;
+            this.file = file;
+            remap(logChunkBytes);
+        }
+
+        private void remap(long minSize) throws IOException {
+            // Канал нужен только на время отображения, поэтому журналы арендаторов не занимают дескрипторы.
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(minSize, channel.size()));
+            }
+        }
+
+        private void append(byte[] record) throws IOException {
+            int needed = position + 4 + record.length + 4;
+            if (needed > buffer.capacity()) {
+                remap(Math.max((long) buffer.capacity() * 2, needed));
+            }
+            buffer.put(position + 4, record);
+            buffer.putInt(position + 4 + record.length, 0); // Конец журнала даже поверх остатков прежней записи
+            buffer.putInt(position, record.length);
+            position += 4 + record.length;
+            ops++;
+        }
+    }
+
+    /**
+     * Конструктор класса.
+     *
+     * @param dir           Каталог снимков и журналов (свойство telbot.journal.dir); пустая строка выключает журнал.
+     * @param snapshotEvery Количество изменений в журнале, после которого снимок перезаписывается.
+     * @param logChunkBytes Начальный размер отображённого файла журнала; при заполнении размер удваивается.
+     */
+    public TreeJournal(@Value("${telbot.journal.dir:}") String dir,
+                       @Value("${telbot.journal.snapshot-every:10000}") int snapshotEvery,
+                       @Value("${telbot.journal.log-chunk-bytes:262144}") int logChunkBytes) {
+        this.dir = dir == null || dir.isBlank() ? null : Path.of(dir);
+        this.snapshotEvery = snapshotEvery;
+        this.logChunkBytes = logChunkBytes;
+    }
+
+    /**
+     * @return true, если журнал включён.
+     */
+    public boolean enabled() {
+        return dir != null;
+    }
+
+    /**
+     * Восстанавливает дерево арендатора из снимка и хвоста журнала.
+     * Повреждённые файлы удаляются, и загрузка выполняется из базы.
+     *
+     * @param tenantId Арендатор.
+     * @return Восстановленное дерево или null, если журнал выключен или снимка нет.
+     */
+    public Recovered load(long tenantId) {
+        if (dir == null || !Files.exists(snapshotFile(tenantId))) {
+            return null;
+        }
+        try {
+            long generation;
+            long revision;
+            List<CategoryTree.Row> rows;
+            try (FileChannel channel = FileChannel.open(snapshotFile(tenantId), StandardOpenOption.READ)) {
+                ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (in.getInt() != SNAPSHOT_MAGIC) {
+                    throw new IOException("Неизвестный формат снимка " + snapshotFile(tenantId));
+                }
+                generation = in.getLong();
+                revision = in.getLong();
+                int count = in.getInt();
+                rows = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    rows.add(new CategoryTree.Row(in.getLong(), parent(in.getLong()), readName(in)));
+                }
+            }
+            CategoryTree tree = CategoryTree.build(rows);
+
+            Log log = new Log(generation, logFile(tenantId, generation));
+            ByteBuffer buffer = log.buffer;
+            // Подряд идущие добавления применяются одним пакетом: массив детей родителя копируется один раз на пакет.
+            List<CategoryTree.Row> added = new ArrayList<>();
+            while (log.position + 4 <= buffer.capacity()) {
+                int length = buffer.getInt(log.position);
+                if (length <= 0 || log.position + 4 + length > buffer.capacity()) {
+                    break;
+                }
+                ByteBuffer record = buffer.slice(log.position + 4, length);
+                byte type = record.get();
+                revision = record.getLong();
+                TreeOp op = decode(type, record);
+                if (op instanceof TreeOp.Add add) {
+                    added.addAll(add.rows());
+                } else {
+                    tree = tree.withAdded(added);
+                    added.clear();
+                    tree = op.applyTo(tree);
+                }
+                log.position += 4 + length;
+                log.ops++;
+            }
+            tree = tree.withAdded(added);
+            Log previous = logs.put(tenantId, log);
+            if (previous != null) {
+                previous.closed = true;
+            }
+            return new Recovered(tree, revision, log.ops);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Journal of tenant {} is unreadable, the tree will be loaded from the database", tenantId, e);
+            discard(tenantId);
+            return null;
+        }
+    }
+
+    /**
+     * Дописывает изменение в журнал арендатора. Если журнал арендатора не открыт (снимка нет или арендатор
+     * вытеснен), изменение не записывается: ревизия журнала отстанет от базы, и дерево будет прочитано из неё.
+     *
+     * @param tenantId Арендатор.
+     * @param op       Изменение, уже зафиксированное в базе.
+     * @param revision Ревизия дерева в базе после этого изменения.
+     */
+    public void append(long tenantId, TreeOp op, long revision) {
+        Log log = logs.get(tenantId);
+        if (log == null) {
+            return;
+        }
+        synchronized (log) {
+            if (log.closed) {
+                return; // Снимок перезаписан; изменение уже учтено в нём вызывающим кодом
+            }
+            try {
+                log.append(encode(op, revision));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to append to the journal of tenant {}, the journal is discarded", tenantId, e);
+                log.closed = true;
+                discard(tenantId); // Без записи журнал отстал бы от базы
+            }
+        }
+    }
+
+    /**
+     * @param tenantId Арендатор.
+     * @return true, если журнал арендатора достаточно длинный, чтобы перезаписать снимок.
+     */
+    public boolean needsSnapshot(long tenantId) {
+        Log log = logs.get(tenantId);
+        return log != null && log.ops >= snapshotEvery;
+    }
+
+    /**
+     * Записывает снимок дерева арендатора и начинает новый журнал. Дерево должно содержать
+     * все изменения, переданные в {@link #append(long, TreeOp, long)} до этого вызова.
+     *
+     * @param tenantId Арендатор.
+     * @param tree     Актуальный снимок.
+     * @param revision Ревизия дерева в базе, с которой согласован снимок.
+     */
+    public void writeSnapshot(long tenantId, CategoryTree tree, long revision) {
+        if (dir == null) {
+            return;
+        }
+        Log previous = logs.get(tenantId);
+        Object lock = previous != null ? previous : this;
+        synchronized (lock) {
+            long generation = previous != null ? previous.generation + 1 : 1;
+            try {
+                Files.createDirectories(dir);
+                Path temp = dir.resolve("tenant-" + tenantId + ".snap.tmp");
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                    DataOutputStream out = new DataOutputStream(
+                            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                    out.writeInt(SNAPSHOT_MAGIC);
+                    out.writeLong(generation);
+                    out.writeLong(revision);
+                    out.writeInt(tree.size());
+                    writeRows(tree, out);
+                    out.flush();
+                    channel.force(true);
+                }
+                Files.deleteIfExists(logFile(tenantId, generation)); // Остаток прерванной ранее попытки
+                Log log = new Log(generation, logFile(tenantId, generation));
+                Files.move(temp, snapshotFile(tenantId), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                logs.put(tenantId, log);
+                if (previous != null) {
+                    previous.closed = true;
+                    Files.deleteIfExists(previous.file);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Failed to write the snapshot of tenant {}", tenantId, e);
+                discard(tenantId);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает журнал арендатора на диск и освобождает отображение; файлы остаются для следующей загрузки.
+     * Вызывается при вытеснении снимка арендатора из памяти.
+     *
+     * @param tenantId Арендатор.
+     */
+    public void release(long tenantId) {
+        Log log = logs.remove(tenantId);
+        if (log == null) {
+            return;
+        }
+        synchronized (log) {
+            if (!log.closed) {
+                log.buffer.force();
+                log.closed = true;
+            }
+            log.buffer = null; // Отображение освобождается сборщиком мусора
+        }
+    }
+
+    /**
+     * Удаляет снимок и журнал арендатора; следующая загрузка будет выполнена из базы.
+     *
+     * @param tenantId Арендатор.
+     */
+    public void discard(long tenantId) {
+        Log log = logs.remove(tenantId);
+        try {
+            if (log != null) {
+                log.closed = true;
+                Files.deleteIfExists(log.file);
+            }
+            Files.deleteIfExists(snapshotFile(tenantId));
+        } catch (IOException e) {
+            logger.warn("Failed to delete the journal of tenant {}", tenantId, e);
+        }
+    }
+
+    /**
+     * @return Количество журналов, отображённых в память.
+     */
+    int openLogs() {
+        return logs.size();
+    }
+
+    /**
+     * Сбрасывает журналы на диск при остановке приложения.
+     */
+    @PreDestroy
+    public void close() {
+        for (Log log : logs.values()) {
+            synchronized (log) {
+                if (!log.closed) {
+                    log.buffer.force();
+                    log.closed = true;
+                }
+            }
+        }
+        logs.clear();
+    }
+
+    private Path snapshotFile(long tenantId) {
+        return dir.resolve("tenant-" + tenantId + ".snap");
+    }
+
+    private Path logFile(long tenantId, long generation) {
+        return dir.resolve("tenant-" + tenantId + "-" + generation + ".log");
+    }
+
+    private static void writeRows(CategoryTree tree, DataOutputStream out) throws IOException {
+        IOException[] failure = {null};
+        tree.forEachDepthFirst((node, depth) -> {
+            if (failure[0] == null) {
+                try {
+                    writeRow(out, node.id(), node.parentId(), node.name());
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            }
+        });
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
+    private static byte[] encode(TreeOp op, long revision) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        if (op instanceof TreeOp.Add add) {
+            out.writeByte(ADD);
+            out.writeLong(revision);
+            out.writeInt(add.rows().size());
+            for (CategoryTree.Row row : add.rows()) {
+                writeRow(out, row.id(), row.parentId(), row.name());
+            }
+        } else if (op instanceof TreeOp.Remove remove) {
+            out.writeByte(REMOVE);
+            out.writeLong(revision);
+            out.writeLong(remove.id());
+        } else if (op instanceof TreeOp.Move move) {
+            out.writeByte(MOVE);
+            out.writeLong(revision);
+            out.writeLong(move.id());
+            out.writeLong(move.newParentId() != null ? move.newParentId() : NO_PARENT);
+        } else if (op instanceof TreeOp.Rename rename) {
+            out.writeByte(RENAME);
+            out.writeLong(revision);
+            out.writeLong(rename.id());
+            writeName(out, rename.newName());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TreeOp decode(byte type, ByteBuffer in) throws IOException {
+        return switch (type) {
+            case ADD -> {
+                int count = in.getInt();
+                List<CategoryTree.Row> rows = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    rows.add(new CategoryTree.Row(in.getLong(), parent(in.getLong()), readName(in)));
+                }
+                yield new TreeOp.Add(rows);
+            }
+            case REMOVE -> new TreeOp.Remove(in.getLong());
+            case MOVE -> new TreeOp.Move(in.getLong(), parent(in.getLong()));
+            case RENAME -> new TreeOp.Rename(in.getLong(), readName(in));
+            default -> throw new IOException("Неизвестный тип записи журнала: " + type);
+        };
+    }
+
+    private static void writeRow(DataOutputStream out, long id, Long parentId, String name) throws IOException {
+        out.writeLong(id);
+        out.writeLong(parentId != null ? parentId : NO_PARENT);
+        writeName(out, name);
+    }
+
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readName(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Long parent(long value) {
+        return value == NO_PARENT ? null : value;
+    }
+}
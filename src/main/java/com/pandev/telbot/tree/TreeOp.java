@@ -0,0 +1,83 @@
+package com.pandev.telbot.tree;
+
+import java.util.List;
+
+/**
+ * Изменение дерева категорий, применяемое к снимку после фиксации в базе.
+ *
+ * Изменения представлены данными, а не функциями, чтобы их можно было записать в журнал
+ * ({@link TreeJournal}) и воспроизвести при следующем запуске поверх сохранённого снимка.
+ * Применение каждого изменения повторно к уже изменённому снимку ничего не меняет.
+ */
+public sealed interface TreeOp {
+
+    /**
+     * Применяет изменение к снимку.
+     *
+     * @param tree Текущий снимок.
+     * @return Новый снимок.
+     */
+    CategoryTree applyTo(CategoryTree tree);
+
+    /**
+     * Добавление одной категории.
+     *
+     * @param id       Идентификатор новой категории.
+     * @param name     Название.
+     * @param parentId Идентификатор родителя или null.
+     * @return Изменение.
+     */
+    static TreeOp add(long id, String name, Long parentId) {
+        return new Add(List.of(new CategoryTree.Row(id, parentId, name)));
+    }
+
+    /**
+     * Добавление пакета категорий; родитель идёт раньше потомков.
+     *
+     * @param rows Новые категории.
+     */
+    record Add(List<CategoryTree.Row> rows) implements TreeOp {
+        @Override
+        public CategoryTree applyTo(CategoryTree tree) {
+            return tree.withAdded(rows);
+        }
+    }
+
+    /**
+     * Удаление категории вместе с потомками.
+     *
+     * @param id Идентификатор удаляемой категории.
+     */
+    record Remove(long id) implements TreeOp {
+        @Override
+        public CategoryTree applyTo(CategoryTree tree) {
+            return tree.withoutSubtree(id);
+        }
+    }
+
+    /**
+     * Перенос категории вместе с поддеревом.
+     *
+     * @param id          Идентификатор переносимой категории.
+     * @param newParentId Идентификатор нового родителя или null для переноса в корень.
+     */
+    record Move(long id, Long newParentId) implements TreeOp {
+        @Override
+        public CategoryTree applyTo(CategoryTree tree) {
+            return tree.withMoved(id, newParentId);
+        }
+    }
+
+    /**
+     * Переименование категории.
+     *
+     * @param id      Идентификатор категории.
+     * @param newName Новое название.
+     */
+    record Rename(long id, String newName) implements TreeOp {
+        @Override
+        public CategoryTree applyTo(CategoryTree tree) {
+            return tree.withRenamed(id, newName);
+        }
+    }
+}
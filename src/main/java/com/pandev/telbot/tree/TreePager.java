@@ -0,0 +1,173 @@
+package com.pandev.telbot.tree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Постраничное текстовое представление дерева категорий.
+ *
+ * Страница строится ленивым обходом снимка в глубину ({@link DepthFirstCursor}), начиная с произвольного узла:
+ * стек обхода восстанавливается по цепочке родителей за O(глубина), после чего каждая строка выводится
+ * без выделения памяти на узел. Обход прекращается, как только следующая строка не помещается в лимит символов,
+ * поэтому полный текст дерева никогда не материализуется. Граница страницы всегда
+ * совпадает с границей строки. Отступ ограничен {@link #MAX_INDENT} уровнями (глубже строка помечается «…»),
+ * а длинные названия обрезаются, поэтому любая строка помещается в лимит.
+ */
+public final class TreePager {
+
+    /**
+     * Ограничение Telegram на длину текстового сообщения.
+     */
+    public static final int TELEGRAM_MESSAGE_LIMIT = 4096;
+
+    /**
+     * Наибольшее число уровней отступа; более глубокие узлы выводятся с этим отступом и маркером «…».
+     */
+    public static final int MAX_INDENT = 16;
+
+    private TreePager() {
+    }
+
+    /**
+     * Страница дерева.
+     *
+     * @param text       Текст страницы.
+     * @param startId    Идентификатор первого узла страницы или -1, если страница пуста.
+     * @param nextId     Идентификатор первого узла следующей страницы или -1, если страница последняя.
+     * @param expandable Узлы верхнего уровня страницы, у которых есть дочерние категории.
+     */
+    public record Page(String text, long startId, long nextId, List<CategoryTree.Node> expandable) {
+
+        /**
+         * @return true, если после этой страницы есть ещё данные.
+         */
+        public boolean hasNext() {
+            return nextId >= 0;
+        }
+    }
+
+    /**
+     * Строит одну страницу.
+     *
+     * @param tree     Снимок дерева.
+     * @param scopeId  Корень отображаемого поддерева или null для всего дерева.
+     * @param startId  Первый узел страницы или -1 для начала обхода. Если узел отсутствует
+     *                 или не принадлежит поддереву, обход начинается сначала.
+     * @param title    Заголовок страницы.
+     * @param maxChars Максимальная длина текста страницы.
+     * @return Страница дерева.
+     */
+    public static Page page(CategoryTree tree, Long scopeId, long startId, String title, int maxChars) {
+        StringBuilder sb = new StringBuilder(Math.min(maxChars, TELEGRAM_MESSAGE_LIMIT));
+        sb.append(title);
+        List<CategoryTree.Node> expandable = new ArrayList<>();
+        DepthFirstCursor cursor = cursorAt(tree, scopeId, startId);
+        if (cursor == null) {
+            cursor = cursorAt(tree, scopeId, -1); // Узел удалён или не принадлежит поддереву: начинаем сначала
+        }
+        int topDepth = scopeId == null ? 0 : 1;
+
+        long first = -1;
+        long next = -1;
+        while (cursor != null && cursor.advance()) {
+            CategoryTree.Node node = cursor.node();
+            int depth = cursor.depth();
+            int lineLength = indentLength(depth) + 3 + node.name().length();
+            if (first >= 0 && sb.length() + lineLength > maxChars) {
+                next = node.id();
+                break;
+            }
+            if (first < 0) {
+                first = node.id();
+            }
+            appendLine(sb, node.name(), depth, maxChars);
+            if (depth == topDepth && node.hasChildren()) {
+                expandable.add(node);
+            }
+        }
+        return new Page(sb.toString(), first, next, expandable);
+    }
+
+    /**
+     * Ставит обход на начальный узел: для каждого предка до верхнего уровня поддерева добавляется
+     * уровень, продолжающий обход с его следующего соседа.
+     *
+     * @return Итератор или null, если области нет или начальный узел ей не принадлежит.
+     */
+    private static DepthFirstCursor cursorAt(CategoryTree tree, Long scopeId, long startId) {
+        if (scopeId != null && tree.node(scopeId) == null) {
+            return null;
+        }
+        long[] top = scopeId == null ? tree.rootIds() : new long[]{scopeId};
+        DepthFirstCursor cursor = new DepthFirstCursor(tree);
+        if (startId < 0) {
+            cursor.push(top, 0);
+            return cursor;
+        }
+
+        // Цепочка от начального узла вверх до верхнего уровня поддерева.
+        List<CategoryTree.Node> chain = new ArrayList<>();
+        CategoryTree.Node current = tree.node(startId);
+        while (current != null) {
+            chain.add(current);
+            if (scopeId != null ? current.id() == scopeId : current.parentId() == null) {
+                break;
+            }
+            current = current.parentId() == null ? null : tree.node(current.parentId());
+        }
+        if (current == null) {
+            return null;
+        }
+
+        long[] siblings = top;
+        for (int level = chain.size() - 1; level >= 0; level--) {
+            CategoryTree.Node step = chain.get(level);
+            int index = indexOf(siblings, step.id());
+            if (index < 0) {
+                return null;
+            }
+            // Предки уже выведены на предыдущих страницах: продолжаем с их следующих соседей,
+            // а с самого начального узла — включительно.
+            cursor.push(siblings, level == 0 ? index : index + 1);
+            siblings = step.childIds();
+        }
+        return cursor;
+    }
+
+    private static int indexOf(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indentLength(int depth) {
+        return depth > MAX_INDENT ? 2 * MAX_INDENT + 1 : 2 * depth;
+    }
+
+    private static void appendLine(StringBuilder sb, String name, int depth, int maxChars) {
+        // Первая строка страницы выводится всегда, поэтому отступ дополнительно урезается до свободного места.
+        int levels = Math.max(0, Math.min(Math.min(depth, MAX_INDENT), (maxChars - sb.length() - 4) / 2));
+        for (int i = 0; i < levels; i++) {
+            sb.append("  ");
+        }
+        if (levels < depth) {
+            sb.append('…');
+        }
+        sb.append("- ");
+        int room = maxChars - sb.length() - 1;
+        if (name.length() <= room) {
+            sb.append(name);
+        } else if (room > 1) {
+            // Слишком длинное название обрезается, не разрывая суррогатную пару.
+            int cut = room - 1;
+            if (Character.isHighSurrogate(name.charAt(cut - 1))) {
+                cut--;
+            }
+            sb.append(name, 0, cut).append('…');
+        }
+        sb.append('\n');
+    }
+}
@@ -0,0 +1,125 @@
+-- Выполняется после создания схемы Hibernate (spring.jpa.defer-datasource-initialization=true).
+-- Скрипт передаётся драйверу целиком (spring.sql.init.separator), поэтому допускаются блоки DO $$ ... $$.
+
+-- Последовательность category_seq выдаёт блоки идентификаторов; её значение не должно отставать
+-- от уже существующих id (например, выданных прежней IDENTITY-колонкой).
+SELECT setval('category_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM category),
+                                       (SELECT last_value FROM category_seq)));
+
+-- Регистронезависимый уникальный индекс по арендатору и названию: поиск findIdByName идёт по нему,
+-- а не перебором таблицы, и затрагивает только строки своего чата. Прежний глобальный индекс по названию удаляется.
+-- Если в существующих данных уже есть повторы, создаётся обычный индекс и выводится предупреждение.
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_indexes
+                   WHERE indexname IN ('ux_category_tenant_name_lower', 'idx_category_tenant_name_lower')) THEN
+        DROP INDEX IF EXISTS ux_category_name_lower;
+        DROP INDEX IF EXISTS idx_category_name_lower;
+        IF EXISTS (SELECT 1 FROM category GROUP BY tenant_id, lower(name) HAVING count(*) > 1) THEN
+            RAISE WARNING 'category.name has case-insensitive duplicates within a tenant, creating non-unique index';
+            CREATE INDEX idx_category_tenant_name_lower ON category (tenant_id, lower(name));
+        ELSE
+            CREATE UNIQUE INDEX ux_category_tenant_name_lower ON category (tenant_id, lower(name));
+        END IF;
+    END IF;
+END
+$$;
+
+-- Путь хранится как text COLLATE "C": длина не ограничена, поэтому вставку глубоко вложенной категории не
+-- обрывает ограничение столбца. ddl-auto=update типы не меняет, столбец прежнего varchar(2048) приводится здесь;
+-- varchar и text двоично совместимы, поэтому таблица и индекс не переписываются.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_name = 'category' AND column_name = 'path' AND data_type <> 'text') THEN
+        ALTER TABLE category ALTER COLUMN path TYPE text COLLATE "C";
+    END IF;
+END
+$$;
+
+-- Материализованный путь category.path ("/1/17/203/") поддерживается триггерами:
+--  - при вставке и смене parent_id путь строки строится из пути родителя;
+--  - после смены parent_id пути всех потомков переписываются одним UPDATE по диапазону старого пути.
+CREATE OR REPLACE FUNCTION category_set_path() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'UPDATE' AND NEW.parent_id IS NOT DISTINCT FROM OLD.parent_id THEN
+        RETURN NEW;
+    END IF;
+    IF NEW.parent_id IS NULL THEN
+        NEW.path := '/' || NEW.id || '/';
+    ELSE
+        SELECT p.path || NEW.id || '/' INTO NEW.path FROM category p WHERE p.id = NEW.parent_id;
+    END IF;
+    RETURN NEW;
+END
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION category_move_subtree() RETURNS trigger AS $$
+BEGIN
+    IF NEW.path IS DISTINCT FROM OLD.path THEN
+        UPDATE category
+        SET path = NEW.path || substr(path, length(OLD.path) + 1)
+        WHERE path > OLD.path AND path < left(OLD.path, -1) || '0';
+    END IF;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_category_set_path ON category;
+CREATE TRIGGER trg_category_set_path
+    BEFORE INSERT OR UPDATE OF parent_id ON category
+    FOR EACH ROW EXECUTE FUNCTION category_set_path();
+
+DROP TRIGGER IF EXISTS trg_category_move_subtree ON category;
+CREATE TRIGGER trg_category_move_subtree
+    AFTER UPDATE OF parent_id ON category
+    FOR EACH ROW EXECUTE FUNCTION category_move_subtree();
+
+-- Заполнение путей для строк, созданных до появления столбца.
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM category WHERE path IS NULL) THEN
+        WITH RECURSIVE tree AS (
+            SELECT id, '/' || id || '/' AS path FROM category WHERE parent_id IS NULL
+            UNION ALL
+            SELECT c.id, t.path || c.id || '/' FROM category c JOIN tree t ON c.parent_id = t.id
+        )
+        UPDATE category c SET path = tree.path FROM tree WHERE c.id = tree.id;
+    END IF;
+END
+$$;
+
+-- Ревизия дерева арендатора растёт при каждом операторе, который добавляет, меняет или удаляет его категории,
+-- в той же транзакции. Журнал снимков (TreeJournal) запоминает ревизию, с которой он согласован, и при запуске
+-- ему доверяют, только если она совпадает с ревизией в базе: переименования и переносы не меняют ни количество
+-- категорий, ни наибольший id. Строка ревизии блокируется до конца транзакции, поэтому записи одного арендатора
+-- фиксируются по очереди и каждая видит собственную ревизию.
+CREATE TABLE IF NOT EXISTS category_revision (
+    tenant_id bigint PRIMARY KEY,
+    revision  bigint NOT NULL
+);
+
+CREATE OR REPLACE FUNCTION category_bump_revision() RETURNS trigger AS $$
+BEGIN
+    INSERT INTO category_revision (tenant_id, revision)
+    SELECT DISTINCT tenant_id, 1 FROM changed_rows
+    ON CONFLICT (tenant_id) DO UPDATE SET revision = category_revision.revision + 1;
+    RETURN NULL;
+END
+$$ LANGUAGE plpgsql;
+
+-- Таблицы переходов нельзя объявить у триггера на несколько событий, поэтому триггеров три.
+DROP TRIGGER IF EXISTS trg_category_revision_insert ON category;
+CREATE TRIGGER trg_category_revision_insert
+    AFTER INSERT ON category REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION category_bump_revision();
+
+DROP TRIGGER IF EXISTS trg_category_revision_update ON category;
+CREATE TRIGGER trg_category_revision_update
+    AFTER UPDATE ON category REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION category_bump_revision();
+
+DROP TRIGGER IF EXISTS trg_category_revision_delete ON category;
+CREATE TRIGGER trg_category_revision_delete
+    AFTER DELETE ON category REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT EXECUTE FUNCTION category_bump_revision();
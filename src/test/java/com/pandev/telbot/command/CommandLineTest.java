@@ -0,0 +1,30 @@
+package com.pandev.telbot.command;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CommandLineTest {
+
+	@Test
+	void splitsCommandAndPlainArguments() {
+		CommandLine line = CommandLine.parse("  /addElement   Электроника  Телефоны ");
+
+		assertThat(line.command()).isEqualTo("/addElement");
+		assertThat(line.args()).containsExactly("Электроника", "Телефоны");
+	}
+
+	@Test
+	void keepsQuotedNamesTogether() {
+		CommandLine line = CommandLine.parse("/addElement@TreeBot \"Бытовая техника\" «Крупная техника» \"say \\\"hi\\\"\"");
+
+		assertThat(line.command()).isEqualTo("/addElement");
+		assertThat(line.args()).containsExactly("Бытовая техника", "Крупная техника", "say \"hi\"");
+	}
+
+	@Test
+	void commandWithoutArguments() {
+		assertThat(CommandLine.parse("/help").args()).isEmpty();
+		assertThat(CommandLine.parse("").command()).isEmpty();
+	}
+}
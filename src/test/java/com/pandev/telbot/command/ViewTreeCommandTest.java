@@ -0,0 +1,59 @@
+package com.pandev.telbot.command;
+
+import com.pandev.telbot.service.CategoryService;
+import com.pandev.telbot.telegrambot.OutboundQueue;
+import com.pandev.telbot.tree.CategoryTree;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class ViewTreeCommandTest {
+
+	private final CategoryService categoryService = mock(CategoryService.class);
+	private final OutboundQueue outboundQueue = mock(OutboundQueue.class);
+	private final ViewTreeCommand command = new ViewTreeCommand(categoryService, outboundQueue);
+
+	@Test
+	void malformedCallbackIsOnlyAcknowledged() {
+		when(categoryService.getTree()).thenReturn(CategoryTree.build(List.of(new CategoryTree.Row(1, null, "Фрукты"))));
+		List<String> malformed = List.of("tree:open:abc", "tree:open:", "tree:open:42", "tree:jump", "tree:");
+
+		malformed.forEach(data -> command.handleCallback(callback(data)));
+
+		verify(outboundQueue, times(malformed.size())).execute(eq(null), any(AnswerCallbackQuery.class));
+		verifyNoMoreInteractions(outboundQueue);
+		verify(categoryService, never()).page(any(), any(), anyLong(), anyString(), anyInt());
+	}
+
+	private static Update callback(String data) {
+		Chat chat = new Chat();
+		chat.setId(5L);
+		Message message = new Message();
+		message.setChat(chat);
+		message.setMessageId(10);
+		CallbackQuery query = new CallbackQuery();
+		query.setId("q1");
+		query.setData(data);
+		query.setMessage(message);
+		Update update = new Update();
+		update.setCallbackQuery(query);
+		return update;
+	}
+}
@@ -0,0 +1,67 @@
+package com.pandev.telbot.repository;
+
+import com.pandev.telbot.model.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryIdLookupTest {
+
+	private final CategoryRepository repository = mock(CategoryRepository.class);
+	private final CategoryIdLookup lookup = new CategoryIdLookup(repository, 100);
+
+	@AfterEach
+	void clearSynchronization() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	@Test
+	void renameReachesCacheOnlyAfterCommit() {
+		when(repository.findIdByName(1L, "Old")).thenReturn(Optional.of(7L));
+		when(repository.findIdByName(1L, "New")).thenReturn(Optional.empty());
+		TenantContext.run(1, () -> lookup.findIdByName("Old"));
+
+		TransactionSynchronizationManager.initSynchronization();
+		TenantContext.run(1, () -> {
+			lookup.invalidate("Old");
+			lookup.put("New", 7L);
+			assertThat(lookup.findIdByName("Old")).contains(7L);
+			assertThat(lookup.findIdByName("New")).isEmpty();
+		});
+		verify(repository, times(1)).findIdByName(1L, "Old"); // Старое название ещё из кэша
+
+		TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+		TransactionSynchronizationManager.clearSynchronization();
+		when(repository.findIdByName(1L, "Old")).thenReturn(Optional.empty());
+		TenantContext.run(1, () -> {
+			assertThat(lookup.findIdByName("New")).contains(7L);
+			assertThat(lookup.findIdByName("Old")).isEmpty();
+		});
+		verify(repository, times(1)).findIdByName(1L, "New");
+	}
+
+	@Test
+	void rolledBackInsertLeavesNoEntry() {
+		when(repository.findIdByName(1L, "Added")).thenReturn(Optional.empty());
+
+		TransactionSynchronizationManager.initSynchronization();
+		TenantContext.run(1, () -> lookup.put("Added", 9L));
+		TransactionSynchronizationManager.getSynchronizations()
+				.forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+		TransactionSynchronizationManager.clearSynchronization();
+
+		assertThat(TenantContext.call(1, () -> lookup.findIdByName("Added"))).isEmpty();
+		verify(repository, times(1)).findIdByName(1L, "Added");
+	}
+}
@@ -0,0 +1,37 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.tree.CategoryTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryExcelImporterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void parsesWhatTheExporterWrites() throws Exception {
+		CategoryTree tree = CategoryTree.build(List.of(
+				new CategoryTree.Row(1, null, "Фрукты"),
+				new CategoryTree.Row(2, 1L, "Яблоки"),
+				new CategoryTree.Row(3, null, "Овощи")));
+		Path file = new CategoryFileExporter(new CategoryExcelExporter(), tempDir.toString())
+				.exportToFile(tree, TreeFormat.XLSX);
+
+		List<CategoryImportRow> rows = new ArrayList<>();
+		new CategoryExcelImporter().parse(file, rows::add);
+
+		assertThat(rows).containsExactly(
+				new CategoryImportRow("Фрукты", null),
+				new CategoryImportRow("Яблоки", "Фрукты"),
+				new CategoryImportRow("Овощи", null));
+		Files.delete(file);
+	}
+}
@@ -0,0 +1,95 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.tree.CategoryTree;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CategoryFileExporterTest {
+
+	@TempDir
+	Path tempDir;
+
+	private final CategoryTree tree = CategoryTree.build(List.of(
+			new CategoryTree.Row(1, null, "Фрукты"),
+			new CategoryTree.Row(2, 1L, "Яблоки, \"зелёные\""),
+			new CategoryTree.Row(3, 2L, "Гренни Смит"),
+			new CategoryTree.Row(4, 1L, "Груши"),
+			new CategoryTree.Row(5, null, "Овощи")));
+
+	private final List<CategoryImportRow> expected = List.of(
+			new CategoryImportRow("Фрукты", null),
+			new CategoryImportRow("Яблоки, \"зелёные\"", "Фрукты"),
+			new CategoryImportRow("Гренни Смит", "Яблоки, \"зелёные\""),
+			new CategoryImportRow("Груши", "Фрукты"),
+			new CategoryImportRow("Овощи", null));
+
+	@Test
+	void csvRoundTrip() throws Exception {
+		Path file = exporter().exportToFile(tree, TreeFormat.CSV);
+
+		List<CategoryImportRow> rows = new ArrayList<>();
+		CategoryCsvFormat.parse(file, rows::add);
+
+		assertThat(rows).containsExactlyElementsOf(expected);
+		Files.delete(file);
+	}
+
+	@Test
+	void jsonRoundTrip() throws Exception {
+		Path file = exporter().exportToFile(tree, TreeFormat.JSON);
+
+		List<CategoryImportRow> rows = new ArrayList<>();
+		CategoryJsonFormat.parse(file, rows::add);
+
+		assertThat(rows).containsExactlyElementsOf(expected);
+		Files.delete(file);
+	}
+
+	@Test
+	void csvAcceptsHandWrittenFiles() throws Exception {
+		List<CategoryImportRow> rows = new ArrayList<>();
+		CategoryCsvFormat.parse(new StringReader("\uFEFFname,parent\nA,\n\nB,A,extra\r\n\"C\nD\",B"), rows::add);
+
+		assertThat(rows).containsExactly(
+				new CategoryImportRow("A", null),
+				new CategoryImportRow("B", "A"),
+				new CategoryImportRow("C\nD", "B"));
+	}
+
+	@Test
+	void outlineFollowsIndentation() {
+		List<CategoryImportRow> rows = new ArrayList<>();
+		CategoryOutlineFormat.parse("- Фрукты\n  - Яблоки, \"зелёные\"\n\t\tГренни Смит\n\n  Груши\nОвощи\n", null, rows::add);
+
+		assertThat(rows).containsExactlyElementsOf(expected);
+
+		rows.clear();
+		CategoryOutlineFormat.parse("Техника\n    Телефоны", "Магазин", rows::add);
+		assertThat(rows).containsExactly(
+				new CategoryImportRow("Техника", "Магазин"),
+				new CategoryImportRow("Телефоны", "Техника"));
+	}
+
+	@Test
+	void jsonRejectsChildrenBeforeName() {
+		byte[] json = "[{\"children\": [{\"name\": \"B\"}], \"name\": \"A\"}]".getBytes(StandardCharsets.UTF_8);
+
+		assertThatThrownBy(() -> CategoryJsonFormat.parse(new ByteArrayInputStream(json), row -> {
+		})).hasMessageContaining("name");
+	}
+
+	private CategoryFileExporter exporter() {
+		return new CategoryFileExporter(new CategoryExcelExporter(), tempDir.toString());
+	}
+}
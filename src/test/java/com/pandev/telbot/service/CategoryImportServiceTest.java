@@ -0,0 +1,50 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryJdbcRepository;
+import com.pandev.telbot.tree.CategoryTree;
+import com.pandev.telbot.tree.CategoryTreeStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryImportServiceTest {
+
+	@Test
+	void allocatesIdsOnlyForInsertedRows() {
+		CategoryJdbcRepository jdbcRepository = mock(CategoryJdbcRepository.class);
+		CategoryTreeStore treeStore = mock(CategoryTreeStore.class);
+		TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+		when(treeStore.current()).thenReturn(CategoryTree.build(List.of(new CategoryTree.Row(1, null, "Фрукты"))));
+		when(jdbcRepository.allocateIds(anyInt())).thenAnswer(call -> List.of(10L, 11L, 12L).subList(0, call.getArgument(0)));
+		doAnswer(call -> {
+			call.<Consumer<Object>>getArgument(0).accept(null);
+			return null;
+		}).when(transactionTemplate).executeWithoutResult(any());
+		CategoryImportService service = new CategoryImportService(null, jdbcRepository, treeStore,
+				transactionTemplate, 100, mock(TelbotMetrics.class));
+
+		CategoryImportService.ImportResult result = TenantContext.call(1, () -> service.importOutline(
+				"фрукты\nЯблоки\n    Гренни Смит\n    Груши\nяблоки", "Фрукты"));
+
+		assertThat(result.imported()).isEqualTo(3);
+		assertThat(result.skipped()).isEqualTo(2);
+		verify(jdbcRepository).allocateIds(3);
+		verify(jdbcRepository).batchInsert(eq(1L), eq(List.of(
+				new CategoryTree.Row(10, 1L, "Яблоки"),
+				new CategoryTree.Row(11, 10L, "Гренни Смит"),
+				new CategoryTree.Row(12, 10L, "Груши"))), eq(100));
+	}
+}
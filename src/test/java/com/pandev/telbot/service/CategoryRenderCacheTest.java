@@ -0,0 +1,82 @@
+package com.pandev.telbot.service;
+
+import com.pandev.telbot.metrics.TelbotMetrics;
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.tree.CategoryTree;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryRenderCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void reusesExportUntilTreeVersionChanges() throws Exception {
+		CategoryRenderCache cache = new CategoryRenderCache(fileExporter(), 1000, 1 << 20, 8,
+				new TelbotMetrics(new SimpleMeterRegistry()));
+		CategoryTree tree = CategoryTree.build(List.of(new CategoryTree.Row(1, null, "root")));
+
+		CategoryRenderCache.FileExport first = cache.acquire(tree, TreeFormat.XLSX);
+		cache.release(first, "file-1");
+		CategoryRenderCache.FileExport second = cache.acquire(tree, TreeFormat.XLSX);
+
+		assertThat(second).isSameAs(first);
+		assertThat(second.fileId()).isEqualTo("file-1");
+
+		CategoryRenderCache.FileExport updated = cache.acquire(tree.withAdded(2, "child", 1L), TreeFormat.XLSX);
+		assertThat(updated.fileId()).isNull();
+		assertThat(Files.exists(first.file())).isTrue(); // Ещё используется
+
+		cache.release(second, null);
+		assertThat(Files.exists(first.file())).isFalse();
+		assertThat(Files.exists(updated.file())).isTrue();
+	}
+
+	@Test
+	void cachesPagesPerVersion() {
+		CategoryRenderCache cache = new CategoryRenderCache(fileExporter(), 1000, 0, 8,
+				new TelbotMetrics(new SimpleMeterRegistry()));
+		CategoryTree tree = CategoryTree.build(List.of(new CategoryTree.Row(1, null, "root")));
+
+		assertThat(cache.page(tree, null, -1, "", 100)).isSameAs(cache.page(tree, null, -1, "", 100));
+		assertThat(cache.page(tree.withAdded(2, "child", 1L), null, -1, "", 100).text())
+				.isEqualTo("- root\n  - child\n");
+	}
+
+	@Test
+	void keepsExportsOfDifferentTenantsApart() throws Exception {
+		CategoryRenderCache cache = new CategoryRenderCache(fileExporter(), 1000, 1 << 20, 8,
+				new TelbotMetrics(new SimpleMeterRegistry()));
+		CategoryTree tree = CategoryTree.build(List.of(new CategoryTree.Row(1, null, "root")));
+
+		CategoryRenderCache.FileExport first = TenantContext.call(1, () -> acquire(cache, tree));
+		cache.release(first, "file-1");
+		CategoryRenderCache.FileExport second = TenantContext.call(2, () -> acquire(cache, tree));
+
+		assertThat(second).isNotSameAs(first);
+		assertThat(second.fileId()).isNull();
+		cache.release(second, null);
+	}
+
+	private static CategoryRenderCache.FileExport acquire(CategoryRenderCache cache, CategoryTree tree) {
+		try {
+			return cache.acquire(tree, TreeFormat.CSV);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private CategoryFileExporter fileExporter() {
+		return new CategoryFileExporter(new CategoryExcelExporter(), tempDir.toString());
+	}
+}
@@ -0,0 +1,69 @@
+package com.pandev.telbot.service;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TelegramFileDownloaderTest {
+
+	private final byte[] content = new byte[3 * 1024 * 1024 + 17];
+	private HttpServer server;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		Arrays.fill(content, (byte) 7);
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/file", exchange -> {
+			exchange.sendResponseHeaders(200, 0); // Chunked: размер заранее неизвестен
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(content);
+			}
+		});
+		server.start();
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void streamsBodyToTempFile() throws Exception {
+		TelegramFileDownloader downloader = downloader(content.length);
+
+		Path file = downloader.download(url(), null);
+		try {
+			assertThat(Files.readAllBytes(file)).isEqualTo(content);
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test
+	void rejectsFilesOverLimit() {
+		TelegramFileDownloader downloader = downloader(1024 * 1024);
+
+		assertThatThrownBy(() -> downloader.download(url(), (long) content.length)).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> downloader.download(url(), null)).isInstanceOf(IOException.class);
+	}
+
+	private TelegramFileDownloader downloader(long maxBytes) {
+		return new TelegramFileDownloader(Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(10), maxBytes);
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/file/doc.xlsx";
+	}
+}
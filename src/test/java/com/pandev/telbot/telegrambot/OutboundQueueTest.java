@@ -0,0 +1,101 @@
+package com.pandev.telbot.telegrambot;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pandev.telbot.metrics.TelbotMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.bots.AbsSender;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class OutboundQueueTest {
+
+	private final OutboundQueue queue = new OutboundQueue(1000, 1000, 10, 3,
+			new TelbotMetrics(new SimpleMeterRegistry()));
+	private final AbsSender sender = mock(AbsSender.class);
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		queue.shutdown();
+	}
+
+	@Test
+	void mergesTextRepliesQueuedWhileChatIsBusy() throws Exception {
+		CompletableFuture<Message> first = new CompletableFuture<>();
+		doAnswer(invocation -> {
+			sent.add(invocation.<SendMessage>getArgument(0).getText());
+			return sent.size() == 1 ? first : CompletableFuture.completedFuture(new Message());
+		}).when(sender).executeAsync(any(SendMessage.class));
+		queue.setSender(sender);
+
+		CompletableFuture<Void> a = queue.sendText(1L, "a");
+		CompletableFuture<Void> b = queue.sendText(1L, "b");
+		CompletableFuture<Void> c = queue.sendText(1L, "c");
+		Thread.sleep(100);
+		first.complete(new Message());
+
+		CompletableFuture.allOf(a, b, c).get(2, TimeUnit.SECONDS);
+		assertThat(sent).containsExactly("a", "b\n\nc");
+	}
+
+	@Test
+	void splitsOversizedTextAtLineBoundaries() throws Exception {
+		doAnswer(invocation -> {
+			sent.add(invocation.<SendMessage>getArgument(0).getText());
+			return CompletableFuture.completedFuture(new Message());
+		}).when(sender).executeAsync(any(SendMessage.class));
+		queue.setSender(sender);
+		String line = "x".repeat(99);
+		String text = String.join("\n", Collections.nCopies(100, line)); // 9999 символов
+
+		queue.sendText(1L, text).get(2, TimeUnit.SECONDS);
+
+		assertThat(sent).hasSize(3).allMatch(part -> part.length() <= 4096 && part.startsWith(line));
+		assertThat(String.join("\n", sent)).isEqualTo(text);
+	}
+
+	@Test
+	void splitsSingleLongLineWithoutBreakingSurrogatePairs() {
+		String text = "a".repeat(4095) + "\uD83C\uDF33" + "b";
+
+		assertThat(OutboundQueue.split(text, 4096)).containsExactly("a".repeat(4095), "\uD83C\uDF33b");
+		assertThat(OutboundQueue.split("short", 4096)).containsExactly("short");
+	}
+
+	@Test
+	void retriesAfterTooManyRequests() throws Exception {
+		ApiResponse<Object> tooMany = new ObjectMapper().readValue(
+				"{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests\",\"parameters\":{\"retry_after\":1}}",
+				new TypeReference<>() {
+				});
+		doAnswer(invocation -> {
+			sent.add(invocation.<SendMessage>getArgument(0).getText());
+			return sent.size() == 1
+					? CompletableFuture.failedFuture(new TelegramApiRequestException("429", tooMany))
+					: CompletableFuture.completedFuture(new Message());
+		}).when(sender).executeAsync(any(SendMessage.class));
+		queue.setSender(sender);
+
+		long started = System.nanoTime();
+		queue.sendText(1L, "hello").get(3, TimeUnit.SECONDS);
+
+		assertThat(sent).containsExactly("hello", "hello");
+		assertThat(System.nanoTime() - started).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(900));
+	}
+}
@@ -0,0 +1,91 @@
+package com.pandev.telbot.telegrambot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpdateDispatcherTest {
+
+	private final UpdateDispatcher dispatcher = new UpdateDispatcher(4, 100, 3);
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		dispatcher.shutdown();
+	}
+
+	private static Update update(long chatId, String text) {
+		Message message = new Message();
+		message.setChat(new Chat(chatId, "private"));
+		message.setText(text);
+		Update update = new Update();
+		update.setMessage(message);
+		return update;
+	}
+
+	@Test
+	void keepsOrderWithinChat() throws InterruptedException {
+		List<String> handled = new CopyOnWriteArrayList<>();
+		CountDownLatch done = new CountDownLatch(20);
+		for (int i = 0; i < 10; i++) {
+			for (long chat = 1; chat <= 2; chat++) {
+				Update update = update(chat, chat + ":" + i);
+				// Очередь чата ограничена тремя обновлениями, поэтому повторяем, пока не примут.
+				while (!dispatcher.dispatch(update, u -> {
+					handled.add(u.getMessage().getText());
+					done.countDown();
+				})) {
+					Thread.onSpinWait();
+				}
+			}
+		}
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		for (long chat = 1; chat <= 2; chat++) {
+			String prefix = chat + ":";
+			assertThat(handled.stream().filter(t -> t.startsWith(prefix)))
+					.containsExactly(prefix + 0, prefix + 1, prefix + 2, prefix + 3, prefix + 4,
+							prefix + 5, prefix + 6, prefix + 7, prefix + 8, prefix + 9);
+		}
+	}
+
+	@Test
+	void rejectsWhenChatQueueIsFull() throws InterruptedException {
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < 3; i++) {
+			assertThat(dispatcher.dispatch(update(7, "x"), u -> awaitQuietly(release))).isTrue();
+		}
+
+		assertThat(dispatcher.dispatch(update(7, "x"), u -> { })).isFalse();
+		assertThat(dispatcher.dispatch(update(8, "y"), u -> { })).isTrue();
+		release.countDown();
+	}
+
+	@Test
+	void errorInHandlerDoesNotStallChat() throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		assertThat(dispatcher.dispatch(update(9, "a"), u -> {
+			throw new AssertionError("boom");
+		})).isTrue();
+		assertThat(dispatcher.dispatch(update(9, "b"), u -> done.countDown())).isTrue();
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(dispatcher.dispatch(update(9, "c"), u -> { })).isTrue();
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package com.pandev.telbot.telegrambot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class WebhookControllerTest {
+
+	private final UpdateDispatcher dispatcher = new UpdateDispatcher(2, 100, 10);
+	private final CategoryBot bot = mock(CategoryBot.class);
+
+	@AfterEach
+	void tearDown() throws InterruptedException {
+		dispatcher.shutdown();
+	}
+
+	private MockMvc mvc(String secret) {
+		WebhookController controller = new WebhookController(bot, dispatcher, new ObjectMapper(), null,
+				"", secret, Duration.ofMillis(100));
+		return MockMvcBuilders.standaloneSetup(controller).build();
+	}
+
+	private static String update(int updateId, long chatId) {
+		return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":" + updateId
+				+ ",\"date\":0,\"chat\":{\"id\":" + chatId + ",\"type\":\"private\"},\"text\":\"/help\"}}";
+	}
+
+	@Test
+	void acceptsBatchOfUpdatesAndDispatchesEach() throws Exception {
+		mvc("").perform(post("/telegram/webhook")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content("[" + update(1, 10) + "," + update(2, 11) + "]"))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.accepted").value(2));
+
+		verify(bot, timeout(1000).times(2)).handleUpdate(any());
+	}
+
+	@Test
+	void redeliveredBatchRunsOnlyRejectedUpdates() throws Exception {
+		UpdateDispatcher narrow = new UpdateDispatcher(1, 100, 1);
+		CountDownLatch release = new CountDownLatch(1);
+		doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(bot).handleUpdate(any());
+		MockMvc mvc = MockMvcBuilders.standaloneSetup(new WebhookController(bot, narrow, new ObjectMapper(), null,
+				"", "", Duration.ofMillis(100))).build();
+		String batch = "[" + update(1, 10) + "," + update(2, 10) + "]";
+		try {
+			mvc.perform(post("/telegram/webhook").contentType(MediaType.APPLICATION_JSON).content(batch))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(jsonPath("$.accepted").value(1))
+					.andExpect(jsonPath("$.rejected[0]").value(2));
+			release.countDown();
+
+			mvc.perform(post("/telegram/webhook").contentType(MediaType.APPLICATION_JSON).content(batch))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.accepted").value(1))
+					.andExpect(jsonPath("$.duplicate").value(1));
+
+			verify(bot, timeout(1000).times(2)).handleUpdate(any());
+			verify(bot, after(200).times(2)).handleUpdate(any());
+		} finally {
+			release.countDown();
+			narrow.shutdown();
+		}
+	}
+
+	@Test
+	void rejectsRequestWithWrongSecret() throws Exception {
+		mvc("s3cret").perform(post("/telegram/webhook")
+						.header(WebhookController.SECRET_HEADER, "wrong")
+						.contentType(MediaType.APPLICATION_JSON)
+						.content(update(1, 10)))
+				.andExpect(status().isUnauthorized());
+
+		verify(bot, times(0)).handleUpdate(any());
+	}
+}
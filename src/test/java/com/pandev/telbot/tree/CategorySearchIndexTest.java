@@ -0,0 +1,74 @@
+package com.pandev.telbot.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategorySearchIndexTest {
+
+	private final CategoryTree tree = CategoryTree.build(List.of(
+			new CategoryTree.Row(1, null, "Фрукты"),
+			new CategoryTree.Row(2, 1L, "Яблоки"),
+			new CategoryTree.Row(3, 2L, "Яблоки зелёные"),
+			new CategoryTree.Row(4, 1L, "Груши"),
+			new CategoryTree.Row(5, null, "Овощи"),
+			new CategoryTree.Row(6, 5L, "Красные яблоки")));
+
+	@Test
+	void prefixThenSubstringThenFuzzy() {
+		assertThat(search(tree, "ЯБЛ")).containsExactly(
+				new CategorySearchIndex.Match(2, CategorySearchIndex.MatchKind.PREFIX),
+				new CategorySearchIndex.Match(3, CategorySearchIndex.MatchKind.PREFIX),
+				new CategorySearchIndex.Match(6, CategorySearchIndex.MatchKind.SUBSTRING));
+		assertThat(search(tree, "фрукиы")).containsExactly(
+				new CategorySearchIndex.Match(1, CategorySearchIndex.MatchKind.FUZZY));
+		assertThat(search(tree, "мебель")).isEmpty();
+	}
+
+	@Test
+	void indexFollowsTreeChanges() {
+		tree.searchIndex(); // Индекс построен и дальше переносится изменениями
+		CategoryTree changed = tree
+				.withAdded(7, "Яблочный сок", null)
+				.withRenamed(4, "Яблоки груши")
+				.withoutSubtree(2);
+
+		assertThat(search(changed, "ябл")).extracting(CategorySearchIndex.Match::id).containsExactly(4L, 7L, 6L);
+		assertThat(changed.searchIndex().size()).isEqualTo(changed.size());
+		assertThat(changed.pathOf(6)).extracting(CategoryTree.Node::name).containsExactly("Овощи", "Красные яблоки");
+	}
+
+	@Test
+	void consecutiveWritesCarryTrigramPostings() {
+		assertThat(search(tree, "блок")).isNotEmpty(); // Первый поиск по подстроке строит списки триграмм
+		CategoryTree changed = tree
+				.withAdded(7, "Блоки бетонные", null)
+				.withRenamed(6, "Красные груши");
+
+		assertThat(search(changed, "блок")).extracting(CategorySearchIndex.Match::id).containsExactly(7L, 2L, 3L);
+		assertThat(search(changed, "груш")).extracting(CategorySearchIndex.Match::id).containsExactly(4L, 6L);
+		assertThat(changed.searchIndex().postingBuilds()).isEqualTo(1);
+	}
+
+	@Test
+	void prefixSpansSplitBlocks() {
+		CategoryTree grown = tree;
+		for (int i = 0; i < 3 * CategorySearchIndex.BLOCK; i++) {
+			grown = grown.withAdded(100 + i, String.format("Товар %03d", i), null);
+		}
+		grown = grown.withoutSubtree(100 + CategorySearchIndex.BLOCK);
+
+		List<CategorySearchIndex.Match> found = grown.searchIndex().search("товар", 5 * CategorySearchIndex.BLOCK);
+		assertThat(found).hasSize(3 * CategorySearchIndex.BLOCK - 1)
+				.allMatch(match -> match.kind() == CategorySearchIndex.MatchKind.PREFIX)
+				.extracting(CategorySearchIndex.Match::id).isSorted()
+				.doesNotContain(100L + CategorySearchIndex.BLOCK);
+		assertThat(grown.searchIndex().size()).isEqualTo(grown.size());
+	}
+
+	private static List<CategorySearchIndex.Match> search(CategoryTree tree, String query) {
+		return tree.searchIndex().search(query, 10);
+	}
+}
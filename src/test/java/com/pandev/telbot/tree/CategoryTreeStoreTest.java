@@ -0,0 +1,191 @@
+package com.pandev.telbot.tree;
+
+import com.pandev.telbot.model.TenantContext;
+import com.pandev.telbot.repository.CategoryRepository;
+import com.pandev.telbot.repository.CategoryRow;
+import com.pandev.telbot.repository.TreeFingerprint;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryTreeStoreTest {
+
+	private static final TreeJournal NO_JOURNAL = new TreeJournal("", 0, 0);
+
+	private final CategoryRepository repository = mock(CategoryRepository.class);
+
+	@TempDir
+	Path journalDir;
+
+	@Test
+	void loadsOneTreePerTenant() {
+		when(repository.findTreeRows(1L)).thenReturn(rows(1, "a"));
+		when(repository.findTreeRows(2L)).thenReturn(rows(1, "b"));
+		CategoryTreeStore store = new CategoryTreeStore(repository, NO_JOURNAL, 100);
+
+		CategoryTree first = TenantContext.call(1, store::current);
+		CategoryTree second = TenantContext.call(2, store::current);
+
+		assertThat(first.findByName("a1")).isPresent();
+		assertThat(first.findByName("b1")).isEmpty();
+		assertThat(second.findByName("b1")).isPresent();
+		assertThat(TenantContext.call(1, store::current)).isSameAs(first);
+		verify(repository, times(1)).findTreeRows(1L);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedTenantsOverNodeLimit() {
+		when(repository.findTreeRows(anyLong())).thenAnswer(call -> rows(3, "t" + call.getArgument(0)));
+		CategoryTreeStore store = new CategoryTreeStore(repository, NO_JOURNAL, 6);
+
+		CategoryTree first = TenantContext.call(1, store::current);
+		TenantContext.call(2, store::current);
+		TenantContext.call(1, store::current); // Арендатор 2 становится самым давним
+		TenantContext.call(3, store::current);
+
+		assertThat(store.cachedNodes()).isEqualTo(6);
+		assertThat(TenantContext.call(2, store::peek)).isNull();
+		assertThat(TenantContext.call(1, store::peek)).isSameAs(first);
+
+		CategoryTree reloaded = TenantContext.call(2, store::current);
+		assertThat(reloaded.version()).isGreaterThan(first.version());
+		verify(repository, times(2)).findTreeRows(2L);
+	}
+
+	@Test
+	void coldStartReplaysJournalInsteadOfQueryingTree() {
+		when(repository.findTreeRows(1L)).thenReturn(rows(2, "a"));
+		TreeJournal journal = new TreeJournal(journalDir.toString(), 100, 32); // Журнал растёт при второй записи
+		CategoryTreeStore store = new CategoryTreeStore(repository, journal, 100);
+		TenantContext.run(1, () -> {
+			store.current();
+			when(repository.revision(1L)).thenReturn(1L);
+			store.updateAfterCommit(TreeOp.add(3, "a3", 1L));
+			when(repository.revision(1L)).thenReturn(2L);
+			store.updateAfterCommit(new TreeOp.Rename(2, "renamed"));
+		});
+		journal.close();
+
+		when(repository.fingerprint(1L)).thenReturn(fingerprint(3, 2));
+		CategoryTreeStore restarted = new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100);
+		CategoryTree tree = TenantContext.call(1, restarted::current);
+
+		assertThat(tree.findByName("renamed")).map(CategoryTree.Node::id).contains(2L);
+		assertThat(tree.findByName("a3")).map(CategoryTree.Node::parentId).contains(1L);
+		verify(repository, times(1)).findTreeRows(1L);
+	}
+
+	@Test
+	void coldStartFallsBackToDatabaseWhenJournalIsBehind() {
+		when(repository.findTreeRows(1L)).thenReturn(rows(2, "a"));
+		TenantContext.call(1, new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100)::current);
+
+		when(repository.findTreeRows(1L)).thenReturn(rows(3, "a")); // Категория добавлена в обход журнала
+		when(repository.fingerprint(1L)).thenReturn(fingerprint(3, 1));
+		CategoryTree tree = TenantContext.call(1,
+				new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100)::current);
+
+		assertThat(tree.size()).isEqualTo(3);
+		verify(repository, times(2)).findTreeRows(1L);
+	}
+
+	@Test
+	void coldStartFallsBackToDatabaseWhenRenameBypassedJournal() {
+		when(repository.findTreeRows(1L)).thenReturn(rows(2, "a"));
+		TenantContext.call(1, new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100)::current);
+
+		// Переименование не меняет ни количество категорий, ни наибольший id, но меняет ревизию.
+		when(repository.findTreeRows(1L)).thenReturn(List.of(row(1, "a1"), row(2, "renamed")));
+		when(repository.fingerprint(1L)).thenReturn(fingerprint(2, 1));
+		CategoryTree tree = TenantContext.call(1,
+				new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100)::current);
+
+		assertThat(tree.findByName("renamed")).isPresent();
+		verify(repository, times(2)).findTreeRows(1L);
+	}
+
+	@Test
+	void evictionReleasesTenantJournal() {
+		when(repository.findTreeRows(anyLong())).thenAnswer(call -> rows(3, "t" + call.getArgument(0)));
+		TreeJournal journal = new TreeJournal(journalDir.toString(), 100, 64);
+		CategoryTreeStore store = new CategoryTreeStore(repository, journal, 3);
+
+		TenantContext.call(1, store::current);
+		TenantContext.call(2, store::current); // Вытесняет арендатора 1
+
+		assertThat(journal.openLogs()).isEqualTo(1);
+		when(repository.fingerprint(1L)).thenReturn(fingerprint(3, 0));
+		assertThat(TenantContext.call(1, store::current).size()).isEqualTo(3);
+		verify(repository, times(1)).findTreeRows(1L); // Перечитан из сохранённого снимка
+	}
+
+	@Test
+	void journaledUpdateOfUnloadedTenantLeavesNoSlot() {
+		when(repository.findTreeRows(1L)).thenReturn(rows(2, "a"));
+		CategoryTreeStore store = new CategoryTreeStore(repository, new TreeJournal(journalDir.toString(), 100, 64), 100);
+
+		TenantContext.run(7, () -> store.updateAfterCommit(TreeOp.add(3, "a3", null)));
+		assertThat(store.slotCount()).isZero();
+
+		TenantContext.call(1, store::current);
+		TenantContext.run(1, () -> store.updateAfterCommit(TreeOp.add(3, "a3", null)));
+		assertThat(store.slotCount()).isEqualTo(1);
+		assertThat(TenantContext.call(1, store::peek).findByName("a3")).isPresent();
+	}
+
+	private static TreeFingerprint fingerprint(long count, long revision) {
+		return new TreeFingerprint() {
+			@Override
+			public Long getCount() {
+				return count;
+			}
+
+			@Override
+			public Long getRevision() {
+				return revision;
+			}
+		};
+	}
+
+	private static List<CategoryRow> rows(int count, String prefix) {
+		List<CategoryRow> rows = new ArrayList<>();
+		for (long id = 1; id <= count; id++) {
+			rows.add(row(id, prefix + id));
+		}
+		return rows;
+	}
+
+	private static CategoryRow row(long id, String name) {
+		return new CategoryRow() {
+			@Override
+			public Long getId() {
+				return id;
+			}
+
+			@Override
+			public Long getParentId() {
+				return null;
+			}
+
+			@Override
+			public String getName() {
+				return name;
+			}
+
+			@Override
+			public Integer getDepth() {
+				return 0;
+			}
+		};
+	}
+}
@@ -0,0 +1,94 @@
+package com.pandev.telbot.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryTreeTest {
+
+	private static CategoryTree sample() {
+		return CategoryTree.build(List.of(
+				new CategoryTree.Row(1, null, "root"),
+				new CategoryTree.Row(2, 1L, "a"),
+				new CategoryTree.Row(3, 2L, "a1"),
+				new CategoryTree.Row(4, 1L, "b")));
+	}
+
+	private static List<String> render(CategoryTree tree) {
+		List<String> lines = new ArrayList<>();
+		tree.forEachDepthFirst((node, depth) -> lines.add(depth + ":" + node.name()));
+		return lines;
+	}
+
+	@Test
+	void traversesEachNodeOnceFromRoots() {
+		assertThat(render(sample())).containsExactly("0:root", "1:a", "2:a1", "1:b");
+	}
+
+	@Test
+	void addIsCopyOnWrite() {
+		CategoryTree tree = sample();
+		CategoryTree updated = tree.withAdded(5, "a2", 2L);
+
+		assertThat(render(tree)).hasSize(4);
+		assertThat(render(updated)).containsExactly("0:root", "1:a", "2:a1", "2:a2", "1:b");
+		assertThat(updated.version()).isEqualTo(tree.version() + 1);
+		assertThat(updated.findByName("a2")).map(CategoryTree.Node::id).contains(5L);
+	}
+
+	@Test
+	void removeDropsWholeSubtree() {
+		CategoryTree updated = sample().withoutSubtree(2);
+
+		assertThat(render(updated)).containsExactly("0:root", "1:b");
+		assertThat(updated.findByName("a1")).isEmpty();
+		assertThat(updated.size()).isEqualTo(2);
+	}
+
+	@Test
+	void moveRelinksSubtreeAndRejectsCycles() {
+		CategoryTree moved = sample().withMoved(2, 4L);
+
+		assertThat(render(moved)).containsExactly("0:root", "1:b", "2:a", "3:a1");
+		assertThat(moved.withMoved(4, 3L)).isSameAs(moved);
+		assertThat(render(moved.withMoved(2, null))).containsExactly("0:root", "1:b", "0:a", "1:a1");
+	}
+
+	@Test
+	void renameUpdatesNameIndex() {
+		CategoryTree renamed = sample().withRenamed(3, "A-one");
+
+		assertThat(renamed.findByName("a1")).isEmpty();
+		assertThat(renamed.findByName("a-ONE")).map(CategoryTree.Node::id).contains(3L);
+		assertThat(render(renamed)).contains("2:A-one");
+	}
+
+	@Test
+	void sameNameFallsBackToRemainingCategory() {
+		CategoryTree tree = sample().withAdded(5, "A", 4L);
+
+		assertThat(tree.findByName("a")).map(CategoryTree.Node::id).contains(2L);
+		assertThat(tree.withoutSubtree(2).findByName("a")).map(CategoryTree.Node::id).contains(5L);
+		assertThat(tree.withRenamed(2, "x").findByName("a")).map(CategoryTree.Node::id).contains(5L);
+		assertThat(tree.findByName("a")).map(CategoryTree.Node::id).contains(2L);
+	}
+
+	@Test
+	void depthFirstCursorFollowsTraversalOrder() {
+		CategoryTree tree = sample().withMoved(2, 4L).withAdded(5, "c", null);
+		DepthFirstCursor cursor = tree.depthFirst();
+
+		List<String> lines = new ArrayList<>();
+		while (cursor.advance()) {
+			lines.add(cursor.depth() + ":" + cursor.node().name());
+		}
+		assertThat(lines).containsExactlyElementsOf(render(tree));
+
+		StringBuilder sb = new StringBuilder();
+		tree.appendText(4, sb);
+		assertThat(sb).hasToString("- b\n  - a\n    - a1\n");
+	}
+}
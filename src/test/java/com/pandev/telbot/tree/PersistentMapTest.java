@@ -0,0 +1,56 @@
+package com.pandev.telbot.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PersistentMapTest {
+
+	/** Ключ с заданным хешем, чтобы проверить полные совпадения хешей. */
+	private record Key(int hash, String name) {
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+	@Test
+	void updatesShareStructureAndLeaveOldVersionIntact() {
+		PersistentMap.Builder<Long, String> builder = PersistentMap.<Long, String>empty().builder();
+		for (long id = 0; id < 10_000; id++) {
+			builder.put(id, "v" + id);
+		}
+		PersistentMap<Long, String> map = builder.build();
+		PersistentMap<Long, String> updated = map.plus(5L, "five").minus(7L).plus(20_000L, "new");
+
+		assertThat(map.size()).isEqualTo(10_000);
+		assertThat(map.get(5L)).isEqualTo("v5");
+		assertThat(map.get(7L)).isEqualTo("v7");
+		assertThat(updated.size()).isEqualTo(10_000);
+		assertThat(updated.get(5L)).isEqualTo("five");
+		assertThat(updated.get(7L)).isNull();
+		assertThat(updated.get(20_000L)).isEqualTo("new");
+
+		Map<Long, String> copy = new HashMap<>();
+		updated.forEach(copy::put);
+		assertThat(copy).hasSize(10_000).containsEntry(9_999L, "v9999");
+	}
+
+	@Test
+	void keepsKeysWithEqualHashes() {
+		PersistentMap<Key, Integer> map = PersistentMap.<Key, Integer>empty()
+				.plus(new Key(42, "a"), 1)
+				.plus(new Key(42, "b"), 2)
+				.plus(new Key(42, "c"), 3)
+				.minus(new Key(42, "b"));
+
+		assertThat(map.size()).isEqualTo(2);
+		assertThat(map.get(new Key(42, "a"))).isEqualTo(1);
+		assertThat(map.get(new Key(42, "b"))).isNull();
+		assertThat(map.get(new Key(42, "c"))).isEqualTo(3);
+		assertThat(map.minus(new Key(42, "a")).minus(new Key(42, "c")).size()).isZero();
+	}
+}
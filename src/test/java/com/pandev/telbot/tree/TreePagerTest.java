@@ -0,0 +1,79 @@
+package com.pandev.telbot.tree;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TreePagerTest {
+
+	private static CategoryTree balanced() {
+		List<CategoryTree.Row> rows = new ArrayList<>();
+		long id = 1;
+		for (int r = 0; r < 5; r++) {
+			long root = id++;
+			rows.add(new CategoryTree.Row(root, null, "root-" + r));
+			for (int c = 0; c < 10; c++) {
+				long child = id++;
+				rows.add(new CategoryTree.Row(child, root, "child-" + r + "-" + c));
+				for (int g = 0; g < 3; g++) {
+					rows.add(new CategoryTree.Row(id++, child, "leaf-" + r + "-" + c + "-" + g));
+				}
+			}
+		}
+		return CategoryTree.build(rows);
+	}
+
+	@Test
+	void pagesFollowEachOtherAndCoverWholeTree() {
+		CategoryTree tree = balanced();
+		StringBuilder full = new StringBuilder();
+		for (long rootId : tree.rootIds()) {
+			tree.appendText(rootId, full);
+		}
+
+		StringBuilder paged = new StringBuilder();
+		long start = -1;
+		int pages = 0;
+		do {
+			TreePager.Page page = TreePager.page(tree, null, start, "", 300);
+			assertThat(page.text().length()).isLessThanOrEqualTo(300);
+			assertThat(page.text()).endsWith("\n");
+			paged.append(page.text());
+			start = page.nextId();
+			pages++;
+		} while (start >= 0);
+
+		assertThat(pages).isGreaterThan(1);
+		assertThat(paged.toString()).isEqualTo(full.toString());
+	}
+
+	@Test
+	void deepLinesKeepIndentWithinLimit() {
+		List<CategoryTree.Row> rows = new ArrayList<>();
+		for (long id = 1; id <= 3000; id++) {
+			rows.add(new CategoryTree.Row(id, id == 1 ? null : id - 1, "n" + id));
+		}
+		CategoryTree chain = CategoryTree.build(rows);
+
+		TreePager.Page page = TreePager.page(chain, null, 2500, "", 200);
+
+		assertThat(page.startId()).isEqualTo(2500);
+		assertThat(page.text().length()).isLessThanOrEqualTo(200);
+		assertThat(page.text()).startsWith(" ".repeat(2 * TreePager.MAX_INDENT) + "…- n2500\n");
+		assertThat(TreePager.page(chain, null, 2500, "", 20).text()).hasSizeLessThanOrEqualTo(20);
+	}
+
+	@Test
+	void scopedPageStaysInsideSubtree() {
+		CategoryTree tree = balanced();
+		long scope = tree.findByName("child-2-4").orElseThrow().id();
+
+		TreePager.Page page = TreePager.page(tree, scope, -1, "", 4000);
+
+		assertThat(page.text()).isEqualTo("- child-2-4\n  - leaf-2-4-0\n  - leaf-2-4-1\n  - leaf-2-4-2\n");
+		assertThat(page.hasNext()).isFalse();
+	}
+}